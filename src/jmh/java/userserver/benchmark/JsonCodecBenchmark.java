@@ -0,0 +1,139 @@
+package userserver.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import userserver.domain.Club;
+import userserver.domain.User;
+import userserver.handler.model.ClubUserId;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * WebFlux Jackson codec으로 User/Club 한 건과 list를 encode/decode 하는 비용. (byte[] <-> object, DataBuffer 포함)
+ * 실행: gradle jmh -PjmhIncludes=JsonCodecBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+    private static final ResolvableType USER = ResolvableType.forClass(User.class);
+    private static final ResolvableType CLUB = ResolvableType.forClass(Club.class);
+    private static final ResolvableType USER_LIST = ResolvableType.forClassWithGenerics(List.class, User.class);
+    private static final ResolvableType JOIN_MAP = ResolvableType.forClass(Map.class);
+    private static final ResolvableType CLUB_USER_ID = ResolvableType.forClass(ClubUserId.class);
+    private static final byte[] JOIN_JSON = "{\"clubId\":\"5a9f1c2e8d3b4a0001a1b2c3\",\"userId\":\"5a9f1c2e8d3b4a0000000000\"}".getBytes();
+
+    @Param({"10", "1000"})
+    int listSize;
+
+    private final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+    private Jackson2JsonEncoder encoder;
+    private Jackson2JsonDecoder decoder;
+    private User user;
+    private Club club;
+    private List<User> users;
+    private byte[] userJson;
+    private byte[] clubJson;
+    private byte[] usersJson;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        encoder = new Jackson2JsonEncoder(Jackson2ObjectMapperBuilder.json().build());
+        decoder = new Jackson2JsonDecoder(Jackson2ObjectMapperBuilder.json().build());
+        user = user(0);
+        club = new Club("benchmark club", 19, new Date());
+        club.setId("5a9f1c2e8d3b4a0001a1b2c3");
+        club.setMaxMembers(100);
+        users = IntStream.range(0, listSize).mapToObj(JsonCodecBenchmark::user).collect(toList());
+        userJson = bytes(encodeUser());
+        clubJson = bytes(encodeClub());
+        usersJson = bytes(encodeUserList());
+    }
+
+    @Benchmark
+    public DataBuffer encodeUser() {
+        return join(encoder.encode(Mono.just(user), bufferFactory, USER, MediaType.APPLICATION_JSON, Collections.emptyMap()));
+    }
+
+    @Benchmark
+    public DataBuffer encodeClub() {
+        return join(encoder.encode(Mono.just(club), bufferFactory, CLUB, MediaType.APPLICATION_JSON, Collections.emptyMap()));
+    }
+
+    /**
+     * handler가 fromPublisher(Flux<User>)로 쓰는 것과 같이 JSON array로.
+     */
+    @Benchmark
+    public DataBuffer encodeUserList() {
+        return join(encoder.encode(Flux.fromIterable(users), bufferFactory, USER, MediaType.APPLICATION_JSON, Collections.emptyMap()));
+    }
+
+    @Benchmark
+    public Object decodeUser() {
+        return decoder.decodeToMono(body(userJson), USER, MediaType.APPLICATION_JSON, Collections.emptyMap()).block();
+    }
+
+    @Benchmark
+    public Object decodeClub() {
+        return decoder.decodeToMono(body(clubJson), CLUB, MediaType.APPLICATION_JSON, Collections.emptyMap()).block();
+    }
+
+    @Benchmark
+    public Object decodeUserList() {
+        return decoder.decodeToMono(body(usersJson), USER_LIST, MediaType.APPLICATION_JSON, Collections.emptyMap()).block();
+    }
+
+    /**
+     * 예전 join handler처럼 Map으로 받는 경우.
+     */
+    @Benchmark
+    public Object decodeJoinAsMap() {
+        return decoder.decodeToMono(body(JOIN_JSON), JOIN_MAP, MediaType.APPLICATION_JSON, Collections.emptyMap()).block();
+    }
+
+    @Benchmark
+    public Object decodeJoinAsClubUserId() {
+        return decoder.decodeToMono(body(JOIN_JSON), CLUB_USER_ID, MediaType.APPLICATION_JSON, Collections.emptyMap()).block();
+    }
+
+    private Mono<DataBuffer> body(byte[] json) {
+        return Mono.fromSupplier(() -> bufferFactory.wrap(json));
+    }
+
+    private static DataBuffer join(Flux<DataBuffer> buffers) {
+        return DataBufferUtils.join(buffers).block();
+    }
+
+    private static byte[] bytes(DataBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        return bytes;
+    }
+
+    private static User user(int i) {
+        User user = new User("benchmark-" + i, 20 + i % 50, new Date());
+        user.setId(String.format("5a9f1c2e8d3b4a%010d", i));
+        user.setClubId("5a9f1c2e8d3b4a0001a1b2c3");
+        return user;
+    }
+}
@@ -0,0 +1,150 @@
+package userserver.benchmark;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import userserver.UserServerApplication;
+import userserver.domain.User;
+import userserver.repository.Cursor;
+import userserver.repository.UserRepository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * /api/user/list/{page} 의 페이지 위치별 비용.
+ * - skipInMemory: 예전 방식. findAll(sort) 전체를 받아서 Flux.skip
+ * - skipOnServer: findAllBy(Pageable). skip/limit/sort를 한번의 query로 보낸다
+ * - keyset: (createDate, _id) cursor 다음부터 limit
+ *
+ * 응답 wire bytes는 setup에서 각 방식을 한번씩 실행해서 출력한다. (측정 중에는 세지 않는다)
+ * 실행: gradle jmh -PjmhIncludes=PagingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PagingBenchmark {
+    private static final int PAGE_SIZE = 10;
+    private static final int MAX_PAGE = 10_000;
+
+    @Param({"0", "100", "10000"})
+    int page;
+
+    private final WireBytesListener wireBytes = new WireBytesListener();
+    private ConfigurableApplicationContext context;
+    private UserRepository userRepository;
+    private Cursor cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MongoClientSettingsBuilderCustomizer customizer = builder -> builder.addCommandListener(wireBytes);
+        context = new SpringApplicationBuilder(UserServerApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.data.mongodb.database=paging-benchmark",
+                        "clubservice.paging-size=" + PAGE_SIZE,
+                        "logging.level.org.springframework.data=error")
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("wireBytesCustomizer", customizer))
+                .run();
+        userRepository = context.getBean(UserRepository.class);
+        seed(context.getBean(ReactiveMongoTemplate.class), (MAX_PAGE + 1) * PAGE_SIZE);
+
+        User last = page == 0 ? null : userRepository.findAllBy(PageRequest.of(page * PAGE_SIZE - 1, 1, Cursor.SORT)).blockFirst();
+        cursor = last == null ? null : new Cursor(last.getCreateDate(), last.getId());
+
+        System.out.printf("%npage=%d wire bytes: skipInMemory=%d, skipOnServer=%d, keyset=%d%n", page,
+                wireBytes.measure(this::skipInMemory), wireBytes.measure(this::skipOnServer), wireBytes.measure(this::keyset));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<User> skipInMemory() {
+        return userRepository.findAll(Cursor.SORT)
+                .skip(page * PAGE_SIZE)
+                .limitRequest(PAGE_SIZE)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<User> skipOnServer() {
+        return userRepository.findAllBy(PageRequest.of(page, PAGE_SIZE, Cursor.SORT))
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<User> keyset() {
+        return userRepository.findAllAfter(cursor, PAGE_SIZE)
+                .collectList()
+                .block();
+    }
+
+    private static void seed(ReactiveMongoTemplate template, int count) {
+        Long existing = template.count(new Query(), User.class).block();
+        if (existing != null && existing >= count) {
+            return;
+        }
+        // drop 하면 context 시작할 때 만든 (createDate, _id) index도 없어져서 skip/keyset을 index 없이 재게 된다.
+        template.remove(new Query(), User.class).block();
+        long now = System.currentTimeMillis();
+        Flux.range(0, count)
+                .map(x -> new User("benchmark-" + x, 20 + x % 50, new Date(now + x)))
+                .buffer(1000)
+                .concatMap(template::insertAll)
+                .blockLast();
+    }
+
+    static class WireBytesListener implements CommandListener {
+        private final AtomicBoolean enabled = new AtomicBoolean();
+        private final AtomicLong bytes = new AtomicLong();
+
+        long measure(Supplier<?> query) {
+            bytes.set(0);
+            enabled.set(true);
+            try {
+                query.get();
+            } finally {
+                enabled.set(false);
+            }
+            return bytes.get();
+        }
+
+        @Override
+        public void commandStarted(CommandStartedEvent event) {
+        }
+
+        @Override
+        public void commandSucceeded(CommandSucceededEvent event) {
+            if (enabled.get()) {
+                bytes.addAndGet(new RawBsonDocument(event.getResponse(), new BsonDocumentCodec()).getByteBuffer().remaining());
+            }
+        }
+
+        @Override
+        public void commandFailed(CommandFailedEvent event) {
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package userserver.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * JMH 결과(JSON)를 commit 된 baseline과 비교해서, 시간(score)이나 요청당 할당(gc.alloc.rate.norm)이 tolerance보다 늘어난 benchmark가 있으면 실패한다.
+ * baseline에 없는 benchmark는 비교하지 않는다. -Dperf.update=true면 비교 대신 지금 결과로 baseline을 다시 쓴다.
+ * 시간은 기계와 부하에 따라 많이 흔들리므로 baseline은 gate를 돌리는 기계에서 다시 써야 한다. 요청당 할당은 기계와 상관없이 거의 같다.
+ * 실행: gradle perfTest (-PperfTimeTolerance=0.5 -PperfAllocTolerance=0.1 -PperfUpdateBaseline)
+ */
+public class PerfGate {
+    private static final String ALLOC = "·gc.alloc.rate.norm";
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * args: JMH 결과 파일, baseline 파일
+     */
+    public static void main(String[] args) throws IOException {
+        File results = new File(args[0]);
+        File baseline = new File(args[1]);
+        double timeTolerance = Double.parseDouble(System.getProperty("perf.time-tolerance", "0.5"));
+        double allocTolerance = Double.parseDouble(System.getProperty("perf.alloc-tolerance", "0.1"));
+
+        Map<String, Measurement> current = read(MAPPER.readTree(results));
+        if (Boolean.getBoolean("perf.update")) {
+            MAPPER.writeValue(baseline, current);
+            System.out.printf("wrote %d benchmarks to %s%n", current.size(), baseline);
+            return;
+        }
+        Map<String, Measurement> expected = MAPPER.readValue(baseline,
+                MAPPER.getTypeFactory().constructMapType(TreeMap.class, String.class, Measurement.class));
+
+        List<String> regressions = new ArrayList<>();
+        System.out.printf("%-55s %12s %12s %8s %12s %12s %8s%n", "benchmark", "baseline", "current", "change", "alloc base", "alloc now", "change");
+        expected.forEach((name, base) -> {
+            Measurement now = current.get(name);
+            if (now == null) {
+                regressions.add(name + ": missing from results");
+                return;
+            }
+            double timeChange = change(base.score, now.score);
+            double allocChange = change(base.allocBytes, now.allocBytes);
+            System.out.printf("%-55s %12.3f %12.3f %+7.1f%% %12.0f %12.0f %+7.1f%%%n",
+                    name, base.score, now.score, timeChange * 100, base.allocBytes, now.allocBytes, allocChange * 100);
+            if (timeChange > timeTolerance) {
+                regressions.add(String.format("%s: %.3f -> %.3f %s (+%.1f%%, tolerance %.0f%%)",
+                        name, base.score, now.score, now.unit, timeChange * 100, timeTolerance * 100));
+            }
+            if (allocChange > allocTolerance) {
+                regressions.add(String.format("%s: %.0f -> %.0f B/op allocated (+%.1f%%, tolerance %.0f%%)",
+                        name, base.allocBytes, now.allocBytes, allocChange * 100, allocTolerance * 100));
+            }
+        });
+
+        if (!regressions.isEmpty()) {
+            System.out.println();
+            regressions.forEach(x -> System.out.println("REGRESSION " + x));
+            System.exit(1);
+        }
+        System.out.printf("%d benchmarks within tolerance%n", expected.size());
+    }
+
+    /**
+     * key는 "RouterBenchmark.getUser" 에 param이 있으면 ":page=100" 처럼 붙인다.
+     */
+    static Map<String, Measurement> read(JsonNode results) {
+        Map<String, Measurement> measurements = new TreeMap<>();
+        for (JsonNode result : results) {
+            String benchmark = result.get("benchmark").asText();
+            StringBuilder name = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+            JsonNode params = result.path("params");
+            for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                name.append(':').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            Measurement measurement = new Measurement();
+            measurement.score = Math.round(result.path("primaryMetric").path("score").asDouble() * 1000) / 1000.0;
+            measurement.unit = result.path("primaryMetric").path("scoreUnit").asText();
+            measurement.allocBytes = Math.round(result.path("secondaryMetrics").path(ALLOC).path("score").asDouble());
+            measurements.put(name.toString(), measurement);
+        }
+        return measurements;
+    }
+
+    /**
+     * baseline보다 늘어난 비율. baseline이 0이면(측정 안 함) 비교하지 않는다.
+     */
+    private static double change(double base, double now) {
+        return base <= 0 ? 0 : (now - base) / base;
+    }
+
+    public static class Measurement {
+        public double score;
+        public String unit;
+        public double allocBytes;
+    }
+}
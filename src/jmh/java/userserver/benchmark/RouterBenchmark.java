@@ -0,0 +1,180 @@
+package userserver.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import userserver.cache.CacheInvalidationBus;
+import userserver.cache.ClubCache;
+import userserver.configuration.RoutingConfiguration;
+import userserver.domain.Club;
+import userserver.domain.User;
+import userserver.handler.ClubHandler;
+import userserver.handler.RouteMetrics;
+import userserver.handler.SlowRequestLog;
+import userserver.handler.UserHandler;
+import userserver.handler.validator.ModelValidator;
+import userserver.repository.ClubRepository;
+import userserver.repository.UserRepository;
+import userserver.service.ClubService;
+import userserver.service.UserService;
+import userserver.service.WriteCoalescing;
+
+import javax.validation.Validation;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * RoutingConfiguration의 router로 요청 하나를 처리하는 비용. (route match, filter, handler, validate, JSON encode/decode)
+ * repository는 메모리에 있는 user 10000명을 바로 돌려주는 stub이라 mongo 시간은 빠진다.
+ * findAll은 전부, findAllBy(Pageable)는 그 page만 돌려주고, driver가 document를 decode 하듯이 돌려줄 때마다 새 User를 만든다.
+ * 그래서 page를 메모리에서 skip 하면 그만큼 느려지고 할당도 늘어난다.
+ * 실행: gradle jmh -PjmhIncludes=RouterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouterBenchmark {
+    private static final String USER_ID = "5a9f1c2e8d3b4a0000000001";
+    private static final String CLUB_ID = "5a9f1c2e8d3b4a0001a1b2c3";
+    private static final int PAGE_SIZE = 10;
+    private static final int STORED_USERS = 10_000;
+
+    private HttpHandler httpHandler;
+    private String userJson;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        User user = user(1);
+        Club club = new Club("benchmark club", 19, new Date());
+        club.setId(CLUB_ID);
+        List<User> stored = IntStream.range(0, STORED_USERS).mapToObj(RouterBenchmark::user).collect(toList());
+
+        Map<String, Function<Object[], Object>> users = new HashMap<>();
+        users.put("findById", args -> Mono.fromSupplier(() -> copy(user)));
+        users.put("findAll", args -> Flux.fromIterable(stored).map(RouterBenchmark::copy));
+        users.put("findAllBy", args -> Flux.fromIterable(page(stored, (Pageable) args[0])).map(RouterBenchmark::copy));
+        users.put("findAllAfter", args -> Flux.fromIterable(stored.subList(0, (Integer) args[1])).map(RouterBenchmark::copy));
+        users.put("save", args -> Mono.just(args[0]));
+        UserRepository userRepository = stub(UserRepository.class, users);
+        Map<String, Function<Object[], Object>> clubs = new HashMap<>();
+        clubs.put("findById", args -> Mono.just(club));
+        ClubRepository clubRepository = stub(ClubRepository.class, clubs);
+
+        CacheInvalidationBus bus = new CacheInvalidationBus(stub(ReactiveMongoOperations.class, Collections.emptyMap()), false, 0, 0, 0);
+        ClubCache clubCache = new ClubCache(clubRepository, meterRegistry, bus, 10_000, 300);
+        WriteCoalescing writeCoalescing = new WriteCoalescing(meterRegistry, false, 0, 0);
+        ModelValidator validator = new ModelValidator(Validation.buildDefaultValidatorFactory().getValidator());
+        UserHandler userHandler = new UserHandler(
+                new UserService(userRepository, clubRepository, clubCache, meterRegistry, writeCoalescing, PAGE_SIZE), validator);
+        ClubHandler clubHandler = new ClubHandler(
+                new ClubService(clubRepository, userRepository, clubCache, writeCoalescing, PAGE_SIZE), validator);
+
+        RoutingConfiguration routing = new RoutingConfiguration();
+        RouteMetrics routeMetrics = new RouteMetrics(meterRegistry);
+        SlowRequestLog slowRequestLog = new SlowRequestLog(500);
+        httpHandler = RouterFunctions.toHttpHandler(routing.userRouter(userHandler, routeMetrics, slowRequestLog)
+                .and(routing.clubRouter(clubHandler, routeMetrics, slowRequestLog)));
+        userJson = "{\"name\":\"benchmark\",\"age\":20,\"createDate\":" + System.currentTimeMillis() + "}";
+    }
+
+    @Benchmark
+    public String getUser() {
+        return exchange(MockServerHttpRequest.get("/api/user/" + USER_ID).build());
+    }
+
+    @Benchmark
+    public String getUserListPage() {
+        return exchange(MockServerHttpRequest.get("/api/user/list/500").build());
+    }
+
+    @Benchmark
+    public String getUserListFirstPage() {
+        return exchange(MockServerHttpRequest.get("/api/user/list").build());
+    }
+
+    @Benchmark
+    public String saveUser() {
+        return exchange(MockServerHttpRequest.post("/api/user")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .body(userJson));
+    }
+
+    @Benchmark
+    public String getClub() {
+        return exchange(MockServerHttpRequest.get("/api/club/" + CLUB_ID).build());
+    }
+
+    private String exchange(MockServerHttpRequest request) {
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        httpHandler.handle(request, response).block();
+        HttpStatus status = response.getStatusCode();
+        if (status != null && status.isError()) {
+            throw new IllegalStateException(request.getURI() + " returned " + status);
+        }
+        return response.getBodyAsString().block();
+    }
+
+    private static <T> List<T> page(List<T> stored, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), stored.size());
+        return stored.subList(from, Math.min(from + pageable.getPageSize(), stored.size()));
+    }
+
+    /**
+     * 이름이 맞는 method는 주어진 값, 나머지 Mono/Flux method는 empty를 돌려준다.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer.apply(args);
+            }
+            if (method.getReturnType() == Mono.class) {
+                return Mono.empty();
+            }
+            if (method.getReturnType() == Flux.class) {
+                return Flux.empty();
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                return method.getName().equals("toString") ? type.getSimpleName() + " stub" : method.invoke(answers, args);
+            }
+            throw new UnsupportedOperationException(method.toString());
+        });
+    }
+
+    private static User copy(User user) {
+        User copy = new User(user.getName(), user.getAge(), new Date(user.getCreateDate().getTime()));
+        copy.setId(user.getId());
+        return copy;
+    }
+
+    private static User user(int i) {
+        User user = new User("benchmark-" + i, 20 + i % 50, new Date(1_500_000_000_000L + i));
+        user.setId(String.format("5a9f1c2e8d3b4a%010d", i));
+        return user;
+    }
+}
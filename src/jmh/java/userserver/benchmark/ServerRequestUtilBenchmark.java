@@ -0,0 +1,50 @@
+package userserver.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import userserver.util.ServerRequestUtil;
+
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * handler가 path variable과 {page}를 꺼내는 비용. /api/user/list 처럼 {page}가 없는 route도 같이 잰다.
+ * 실행: gradle jmh -PjmhIncludes=ServerRequestUtilBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServerRequestUtilBenchmark {
+    private ServerRequest withPage;
+    private ServerRequest withoutPage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        withPage = MockServerRequest.builder().pathVariable("page", "3").build();
+        withoutPage = MockServerRequest.builder().build();
+    }
+
+    @Benchmark
+    public String pathVariablePresent() {
+        return ServerRequestUtil.getPathVariable(withPage, "page");
+    }
+
+    @Benchmark
+    public String pathVariableAbsent() {
+        return ServerRequestUtil.getPathVariable(withoutPage, "page");
+    }
+
+    @Benchmark
+    public OptionalInt pagePresent() {
+        return ServerRequestUtil.getIntPathVariable(withPage, "page");
+    }
+
+    @Benchmark
+    public OptionalInt pageAbsent() {
+        return ServerRequestUtil.getIntPathVariable(withoutPage, "page");
+    }
+}
@@ -0,0 +1,78 @@
+package userserver.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Mono;
+import userserver.domain.Club;
+import userserver.domain.User;
+import userserver.handler.validator.ModelValidator;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * save/PATCH 마다 불리는 ModelValidator.validate의 비용. invalid는 422 error까지 만든다.
+ * beanValidation은 비교용으로 javax Validator를 바로 부른다. (compile 한 검사가 없을 때, 예전 ModelValidator가 하던 것)
+ * 실행: gradle jmh -PjmhIncludes=ValidatorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidatorBenchmark {
+    private Validator beanValidator;
+    private ModelValidator validator;
+    private User user;
+    private User invalidUser;
+    private Club club;
+    private Map<String, Object> patch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        beanValidator = Validation.buildDefaultValidatorFactory().getValidator();
+        validator = new ModelValidator(beanValidator);
+        user = new User("benchmark", 20, new Date());
+        invalidUser = new User("", -1, new Date());
+        club = new Club("benchmark club", 19, new Date());
+        club.setMaxMembers(100);
+        User changes = new User();
+        changes.setAge(30);
+        patch = changes.toPatch();
+    }
+
+    @Benchmark
+    public User validUser() {
+        return validator.validate(user).block();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<User>> beanValidation() {
+        return beanValidator.validate(user);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<User>> beanValidationInvalid() {
+        return beanValidator.validate(invalidUser);
+    }
+
+    @Benchmark
+    public Object invalidUser() {
+        return validator.<Object>validate(invalidUser).onErrorResume(Mono::just).block();
+    }
+
+    @Benchmark
+    public Club validClub() {
+        return validator.validate(club).block();
+    }
+
+    @Benchmark
+    public User patchUser() {
+        return validator.validate(user, patch.keySet()).block();
+    }
+}
@@ -0,0 +1,22 @@
+package userserver.cache;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * 다른 node에 cache entry를 지우라고 알리는 event. capped collection에 쌓이고 tailable cursor로 읽는다.
+ */
+@Document(collection = "cache_events")
+@NoArgsConstructor
+@RequiredArgsConstructor
+@Data
+public class CacheEvent {
+    @Id private String id;
+    @NonNull private String cache;
+    @NonNull private String key;
+    @NonNull private String node;
+}
@@ -0,0 +1,166 @@
+package userserver.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import userserver.repository.MongoIds;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * 여러 node 사이의 cache invalidation.
+ * 저장/삭제 할 때 capped collection에 CacheEvent를 추가하고, 각 node는 tailable cursor로 그 collection을 따라가면서
+ * 다른 node가 보낸 event의 entry를 자기 local cache에서 지운다. mongo 외에 다른 infra는 필요 없다.
+ * _id(ObjectId)는 각 node가 만들기 때문에 node 사이의 순서를 보장하지 않는다. 그래서 _id 크기로 거르지 않고
+ * capped collection의 저장 순서($natural)로 마지막으로 본 event 다음부터 읽는다.
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus {
+    /**
+     * tail을 열 때 넣는 표시. collection이 비어 있지 않게 해서 cursor가 닫히지 않게 하고, 읽기 시작할 위치가 된다.
+     */
+    private static final String MARKER = "";
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final boolean enabled;
+    private final Duration retryDelay;
+    private final String node = UUID.randomUUID().toString();
+    private final Map<String, Consumer<String>> evictors = new ConcurrentHashMap<>();
+    private final Map<String, Runnable> clears = new ConcurrentHashMap<>();
+    private final Mono<Void> collectionReady;
+    private volatile String lastSeenId;
+    private Disposable subscription;
+
+    public CacheInvalidationBus(ReactiveMongoOperations mongoOperations,
+                                @Value("${clubservice.cache-bus.enabled}") boolean enabled,
+                                @Value("${clubservice.cache-bus.size-bytes}") long sizeBytes,
+                                @Value("${clubservice.cache-bus.max-documents}") long maxDocuments,
+                                @Value("${clubservice.cache-bus.retry-delay-millis}") long retryDelayMillis) {
+        this.mongoOperations = mongoOperations;
+        this.enabled = enabled;
+        this.retryDelay = Duration.ofMillis(retryDelayMillis);
+        this.collectionReady = createCollection(CollectionOptions.empty().capped().size(sizeBytes).maxDocuments(maxDocuments))
+                .cache();
+    }
+
+    /**
+     * evictor는 key 하나를, clear는 놓친 event가 있을 때 cache 전체를 지운다.
+     */
+    public void register(String cache, Consumer<String> evictor, Runnable clear) {
+        evictors.put(cache, evictor);
+        clears.put(cache, clear);
+    }
+
+    /**
+     * 실패해도 에러를 내지 않는다. 이미 끝난 저장의 결과가 event 전달 때문에 실패가 되면 안 된다. (다른 node는 TTL로 만료)
+     */
+    public Mono<Void> publish(String cache, String key) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return collectionReady
+                .then(mongoOperations.insert(new CacheEvent(cache, key, node)))
+                .doOnError(e -> log.warn("can not publish cache event cache={} key={}", cache, key, e))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        // 시작 위치를 먼저 잡아 둬야 start 뒤에 다른 node가 넣은 event를 놓치지 않는다. 실패하면 tail을 열 때 다시 잡는다.
+        if (lastSeenId == null) {
+            lastSeenId = collectionReady
+                    .then(insertMarker())
+                    .doOnError(e -> log.warn("can not insert cache event marker", e))
+                    .onErrorResume(e -> Mono.empty())
+                    .block();
+        }
+        // cursor는 awaitData로 열려 있다. 에러 등으로 닫혔을 때만 잠시 후 마지막으로 본 event 다음부터 다시 연다.
+        subscription = collectionReady
+                .then(Mono.defer(this::resumePoint))
+                .flatMapMany(this::tailAfter)
+                .repeatWhen(x -> x.delayElements(retryDelay))
+                .retryWhen(x -> x
+                        .doOnNext(e -> log.warn("cache event tailing failed, retry", e))
+                        .delayElements(retryDelay))
+                .subscribe(this::onEvent);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * 처음이면 marker를 넣고 거기서부터. 마지막으로 본 event가 capped collection에서 밀려났으면 그 사이 event를 놓쳤을 수 있으니
+     * local cache를 모두 비우고 새 marker부터 읽는다.
+     */
+    private Mono<String> resumePoint() {
+        String id = lastSeenId;
+        Mono<String> marker = insertMarker();
+        if (id == null) {
+            return marker;
+        }
+        return mongoOperations.exists(query(where("id").is(MongoIds.toObjectId(id))), CacheEvent.class)
+                .flatMap(exists -> {
+                    if (exists) {
+                        return Mono.just(id);
+                    }
+                    log.warn("cache events after {} were overwritten, clear local caches", id);
+                    clears.values().forEach(Runnable::run);
+                    return marker;
+                });
+    }
+
+    private Mono<String> insertMarker() {
+        return mongoOperations.insert(new CacheEvent(MARKER, MARKER, node))
+                .map(CacheEvent::getId);
+    }
+
+    private Flux<CacheEvent> tailAfter(String id) {
+        return mongoOperations.tail(new Query(), CacheEvent.class)
+                .skipUntil(x -> id.equals(x.getId()))
+                .skip(1);
+    }
+
+    private void onEvent(CacheEvent event) {
+        lastSeenId = event.getId();
+        if (node.equals(event.getNode())) {
+            return;
+        }
+        Consumer<String> evictor = evictors.get(event.getCache());
+        if (evictor != null) {
+            evictor.accept(event.getKey());
+        }
+    }
+
+    private Mono<Void> createCollection(CollectionOptions options) {
+        return mongoOperations.collectionExists(CacheEvent.class)
+                .filter(exists -> !exists)
+                .flatMap(x -> mongoOperations.createCollection(CacheEvent.class, options))
+                .doOnError(e -> log.warn("can not create capped collection for cache events", e))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+}
@@ -0,0 +1,129 @@
+package userserver.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import userserver.domain.Club;
+import userserver.repository.ClubRepository;
+import userserver.util.MultiGet;
+import userserver.util.SingleFlight;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * id로 Club을 찾는 read-through cache. 클럽은 수가 적고 거의 바뀌지 않아서 대부분의 조회가 mongo까지 가지 않는다.
+ * 크기와 TTL로 evict 되고, hit/miss/eviction은 actuator의 cache.* metric으로 나간다.
+ * evict는 CacheInvalidationBus를 통해 다른 node에도 전달된다.
+ * cache miss가 동시에 나면 SingleFlight로 mongo 조회를 하나로 합친다.
+ * 조회하는 동안 evict 된 key는 조회한 값이 이미 오래됐을 수 있어서 cache에 넣지 않는다. (key를 나눈 stripe마다 evict 횟수로 확인)
+ */
+@Component
+public class ClubCache {
+    public static final String NAME = "clubs";
+    private static final int STRIPES = 64;
+
+    private final ClubRepository clubRepository;
+    private final Cache<String, Club> cache;
+    private final CacheInvalidationBus invalidationBus;
+    private final SingleFlight<String, Club> loads;
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    public ClubCache(ClubRepository clubRepository,
+                     MeterRegistry meterRegistry,
+                     CacheInvalidationBus invalidationBus,
+                     @Value("${clubservice.club-cache.maximum-size}") long maximumSize,
+                     @Value("${clubservice.club-cache.expire-after-write-seconds}") long expireAfterWriteSeconds) {
+        this.clubRepository = clubRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+        this.loads = new SingleFlight<>(NAME, meterRegistry);
+        this.invalidationBus = invalidationBus;
+        invalidationBus.register(NAME, this::invalidate, this::invalidateAll);
+    }
+
+    public Mono<Club> get(String id) {
+        return Mono.defer(() -> {
+            Club club = cache.getIfPresent(id);
+            if (club != null) {
+                return Mono.just(club);
+            }
+            long generation = generations.get(stripe(id));
+            return loads.execute(id, clubRepository::findById)
+                    .doOnNext(x -> putIfNotEvicted(id, x, generation));
+        });
+    }
+
+    /**
+     * 여러 club을 요청한 id 순서대로. cache에 없는 것만 모아서 $in으로 읽는다.
+     */
+    public Flux<Club> getAll(List<String> ids) {
+        return Flux.defer(() -> {
+            Map<String, Club> hits = cache.getAllPresent(ids);
+            List<String> misses = ids.stream().filter(x -> !hits.containsKey(x)).collect(toList());
+            Map<String, Long> missGenerations = misses.stream().distinct().collect(toMap(x -> x, x -> generations.get(stripe(x))));
+            return MultiGet.findAll(misses, clubRepository::findAllById, Club::getId)
+                    .doOnNext(loaded -> loaded.forEach((id, club) -> putIfNotEvicted(id, club, missGenerations.get(id))))
+                    .flatMapIterable(loaded -> {
+                        loaded.putAll(hits);
+                        return MultiGet.inOrder(ids, loaded);
+                    });
+        });
+    }
+
+    /**
+     * mongo에서 방금 읽은 최신 club으로 local entry만 바꾼다. (다른 node에는 알리지 않음)
+     */
+    public void put(Club club) {
+        cache.put(club.getId(), club);
+    }
+
+    public Mono<Void> evict(String id) {
+        invalidate(id);
+        return invalidationBus.publish(NAME, id);
+    }
+
+    private void invalidate(String id) {
+        generations.incrementAndGet(stripe(id));
+        loads.forget(id);
+        cache.invalidate(id);
+    }
+
+    private void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    /**
+     * 넣은 뒤에 다시 확인한다. 확인과 put 사이에 evict가 끝났으면 방금 넣은 값을 지운다.
+     */
+    private void putIfNotEvicted(String id, Club club, long generation) {
+        if (generations.get(stripe(id)) != generation) {
+            return;
+        }
+        cache.put(id, club);
+        if (generations.get(stripe(id)) != generation) {
+            cache.invalidate(id);
+        }
+    }
+
+    private static int stripe(String id) {
+        return (id.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+}
@@ -0,0 +1,27 @@
+package userserver.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import java.util.Collections;
+
+@Configuration
+public class CodecConfiguration {
+    public static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
+
+    /**
+     * application/x-ndjson 요청은 document 하나를 encode 할 때마다 한줄씩 바로 내보낸다.
+     */
+    @Bean
+    public CodecCustomizer ndjsonCodecCustomizer(ObjectMapper objectMapper) {
+        return configurer -> {
+            Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper, APPLICATION_NDJSON);
+            encoder.setStreamingMediaTypes(Collections.singletonList(APPLICATION_NDJSON));
+            configurer.customCodecs().encoder(encoder);
+        };
+    }
+}
@@ -0,0 +1,31 @@
+package userserver.configuration;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.connection.ConnectionPoolSettings;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import userserver.repository.MongoCommandMetrics;
+import userserver.repository.MongoPoolMetrics;
+
+@Configuration
+public class MongoMetricsConfiguration {
+    /**
+     * pool listener를 붙이려면 pool settings를 새로 만들어야 해서, spring.data.mongodb.uri의 pool 옵션을 다시 적용한다.
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoMetricsCustomizer(MeterRegistry meterRegistry, MongoProperties properties) {
+        ConnectionPoolSettings.Builder pool = ConnectionPoolSettings.builder();
+        if (properties.getUri() != null) {
+            pool.applyConnectionString(new ConnectionString(properties.getUri()));
+        }
+        ConnectionPoolSettings poolSettings = pool
+                .addConnectionPoolListener(new MongoPoolMetrics(meterRegistry))
+                .build();
+        return builder -> builder
+                .addCommandListener(new MongoCommandMetrics(meterRegistry))
+                .connectionPoolSettings(poolSettings);
+    }
+}
@@ -1,62 +1,76 @@
 package userserver.configuration;
 
-import lombok.extern.slf4j.Slf4j;
 import userserver.handler.ClubHandler;
+import userserver.handler.RouteMetrics;
+import userserver.handler.SlowRequestLog;
 import userserver.handler.UserHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.server.RequestPredicate;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
 import static org.springframework.web.reactive.function.server.RequestPredicates.*;
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+import static userserver.handler.RouteMetrics.named;
 
 @Configuration
-@Slf4j
 public class RoutingConfiguration {
     RequestPredicate JSON_PREDICATE = accept(MediaType.APPLICATION_JSON);
 
     @Bean
-    public RouterFunction<ServerResponse> userRouter(UserHandler userHandler) {
+    public RouterFunction<ServerResponse> userRouter(UserHandler userHandler, RouteMetrics routeMetrics, SlowRequestLog slowRequestLog) {
         final RequestPredicate SAVE_PREDICATE = POST("/api/user").or(PUT("/api/user")).and(JSON_PREDICATE );
         final RequestPredicate GET_PREDICATE = GET("/api/user/{id}");
+        final RequestPredicate IDS_PREDICATE = GET("/api/user").and(queryParam("ids", StringUtils::hasLength));
+        final RequestPredicate BATCH_GET_PREDICATE = POST("/api/user/batch-get");
         final RequestPredicate LIST_PREDICATE = GET("/api/user/list/{page}").or(GET("/api/user/list"));
         final RequestPredicate DELETE_PREDICATE = DELETE("/api/user/{id}");
+        final RequestPredicate PATCH_PREDICATE = PATCH("/api/user/{id}").and(JSON_PREDICATE);
         final RequestPredicate CLUB_PREDICATE = GET("/api/user/club/{id}");
 
-        return route(SAVE_PREDICATE, userHandler::save)
-                .andRoute(LIST_PREDICATE,userHandler::getList)
-                .andRoute(GET_PREDICATE, userHandler::get)
-                .andRoute(DELETE_PREDICATE, userHandler::delete)
-                .andRoute(CLUB_PREDICATE, userHandler::getClub)
-                .filter((request, next) -> {
-                    log.debug("do something!!");
-                    return next.handle(request);
-                });
+        return route(SAVE_PREDICATE, named("user.save", userHandler::save))
+                .andRoute(LIST_PREDICATE, named("user.get_list", userHandler::getList))
+                .andRoute(GET_PREDICATE, named("user.get", userHandler::get))
+                .andRoute(IDS_PREDICATE, named("user.get_by_ids", userHandler::getByIds))
+                .andRoute(BATCH_GET_PREDICATE, named("user.batch_get", userHandler::batchGet))
+                .andRoute(DELETE_PREDICATE, named("user.delete", userHandler::delete))
+                .andRoute(PATCH_PREDICATE, named("user.patch", userHandler::patch))
+                .andRoute(CLUB_PREDICATE, named("user.get_club", userHandler::getClub))
+                .filter(routeMetrics)
+                .filter(slowRequestLog);
     }
 
     @Bean
-    public RouterFunction<ServerResponse> clubRouter(ClubHandler clubHandler) {
+    public RouterFunction<ServerResponse> clubRouter(ClubHandler clubHandler, RouteMetrics routeMetrics, SlowRequestLog slowRequestLog) {
         final RequestPredicate SAVE_PREDICATE = POST("/api/club").or(PUT("/api/club")).and(JSON_PREDICATE );
         final RequestPredicate GET_PREDICATE = GET("/api/club/{id}");
+        final RequestPredicate IDS_PREDICATE = GET("/api/club").and(queryParam("ids", StringUtils::hasLength));
+        final RequestPredicate BATCH_GET_PREDICATE = POST("/api/club/batch-get");
         final RequestPredicate LIST_PREDICATE = GET("/api/club/list/{page}") .or(GET("/api/club/list"));
         final RequestPredicate DELETE_PREDICATE = DELETE("/api/club/{id}");
+        final RequestPredicate PATCH_PREDICATE = PATCH("/api/club/{id}").and(JSON_PREDICATE);
         final RequestPredicate JOIN_PREDICATE = POST("/api/club/join");
         final RequestPredicate LEAVE_PREDICATE = POST("/api/club/leave");
+        final RequestPredicate JOIN_BATCH_PREDICATE = POST("/api/club/join/batch");
+        final RequestPredicate LEAVE_BATCH_PREDICATE = POST("/api/club/leave/batch");
+        final RequestPredicate MEMBERS_PREDICATE = GET("/api/club/{id}/members");
 
-        return route(SAVE_PREDICATE, clubHandler::save)
-                .andRoute(LIST_PREDICATE,clubHandler::getList)
-                .andRoute(GET_PREDICATE, clubHandler::get)
-                .andRoute(DELETE_PREDICATE, clubHandler::delete)
-                .andRoute(JOIN_PREDICATE, clubHandler::join)
-                .andRoute(LEAVE_PREDICATE, clubHandler::leave)
-                .filter((request, next) -> {
-                    log.debug("do something!!");
-                    return next.handle(request);
-                });
-
-
+        return route(SAVE_PREDICATE, named("club.save", clubHandler::save))
+                .andRoute(LIST_PREDICATE, named("club.get_list", clubHandler::getList))
+                .andRoute(GET_PREDICATE, named("club.get", clubHandler::get))
+                .andRoute(IDS_PREDICATE, named("club.get_by_ids", clubHandler::getByIds))
+                .andRoute(BATCH_GET_PREDICATE, named("club.batch_get", clubHandler::batchGet))
+                .andRoute(DELETE_PREDICATE, named("club.delete", clubHandler::delete))
+                .andRoute(PATCH_PREDICATE, named("club.patch", clubHandler::patch))
+                .andRoute(JOIN_PREDICATE, named("club.join", clubHandler::join))
+                .andRoute(LEAVE_PREDICATE, named("club.leave", clubHandler::leave))
+                .andRoute(JOIN_BATCH_PREDICATE, named("club.join_batch", clubHandler::joinBatch))
+                .andRoute(LEAVE_BATCH_PREDICATE, named("club.leave_batch", clubHandler::leaveBatch))
+                .andRoute(MEMBERS_PREDICATE, named("club.get_members", clubHandler::getMembers))
+                .filter(routeMetrics)
+                .filter(slowRequestLog);
     }
 }
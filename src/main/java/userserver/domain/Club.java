@@ -1,11 +1,12 @@
 package userserver.domain;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import reactor.core.publisher.Mono;
@@ -18,6 +19,7 @@ import javax.validation.constraints.Size;
 import java.util.*;
 
 @Document(collection = "clubs")
+@CompoundIndex(name = "createDate_id", def = "{'createDate': 1, '_id': 1}")
 @NoArgsConstructor
 @RequiredArgsConstructor
 @Data
@@ -25,7 +27,22 @@ public class Club {
     @Id private String id;
     @NonNull @NotBlank @Size(min = 5, max = 20) private String name;
     @NonNull @Positive private Integer minAgeForJoin;
-    @Indexed @NonNull private Date createDate;
+    @NonNull private Date createDate;
+    /** null이면 인원 제한 없음 */
+    @Positive private Integer maxMembers;
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY) private long memberCount;
+
+    /**
+     * PATCH로 바꿀 필드 중 값이 있는 것만. memberCount는 join/leave로만 바뀐다.
+     */
+    public Map<String, Object> toPatch() {
+        Map<String, Object> patch = new LinkedHashMap<>();
+        if (name != null) patch.put("name", name);
+        if (minAgeForJoin != null) patch.put("minAgeForJoin", minAgeForJoin);
+        if (createDate != null) patch.put("createDate", createDate);
+        if (maxMembers != null) patch.put("maxMembers", maxMembers);
+        return patch;
+    }
 
     @Override
     public boolean equals(Object o) {
@@ -47,6 +64,8 @@ public class Club {
                 ", name='" + name + '\'' +
                 ", minAgeForJoin=" + minAgeForJoin +
                 ", createDate=" + createDate +
+                ", maxMembers=" + maxMembers +
+                ", memberCount=" + memberCount +
                 '}';
     }
 }
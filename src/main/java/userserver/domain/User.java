@@ -2,7 +2,8 @@ package userserver.domain;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -10,9 +11,15 @@ import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 
 @Document(collection = "users")
+@CompoundIndexes({
+        @CompoundIndex(name = "createDate_id", def = "{'createDate': 1, '_id': 1}"),
+        @CompoundIndex(name = "clubId_createDate_id", def = "{'clubId': 1, 'createDate': 1, '_id': 1}")
+})
 @NoArgsConstructor
 @RequiredArgsConstructor
 @Data
@@ -20,8 +27,19 @@ public class User {
     @Id private String id;
     @NonNull @NotBlank  private String name;
     @NonNull @NotNull @Positive private Integer age;
-    @Indexed @NonNull private Date createDate;
-    @Indexed private String clubId;
+    @NonNull private Date createDate;
+    private String clubId;
+
+    /**
+     * PATCH로 바꿀 필드 중 값이 있는 것만. clubId는 join/leave로만 바뀐다.
+     */
+    public Map<String, Object> toPatch() {
+        Map<String, Object> patch = new LinkedHashMap<>();
+        if (name != null) patch.put("name", name);
+        if (age != null) patch.put("age", age);
+        if (createDate != null) patch.put("createDate", createDate);
+        return patch;
+    }
 
     @Override
     public boolean equals(Object o) {
@@ -1,5 +1,5 @@
 package userserver.enums;
 
 public enum JoinResult {
-    SUCCESS, FAIL_CLUB_IS_JOINED, FAIL_NOT_ALLOW_AGE, NOT_FOUND;
+    SUCCESS, FAIL_CLUB_IS_JOINED, FAIL_NOT_ALLOW_AGE, FAIL_CLUB_IS_FULL, NOT_FOUND;
 }
@@ -0,0 +1,14 @@
+package userserver.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public class BadRequestException extends ResponseStatusException {
+    public BadRequestException(String reason) {
+        super(HttpStatus.BAD_REQUEST, reason);
+    }
+
+    public BadRequestException(String reason, Throwable cause) {
+        super(HttpStatus.BAD_REQUEST, reason, cause);
+    }
+}
@@ -2,9 +2,24 @@ package userserver.exception;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
+import userserver.handler.validator.Violation;
+
+import java.util.Collections;
+import java.util.List;
 
 public class UnprocessableEntityException extends ResponseStatusException {
+    private final List<Violation> violations;
+
     public UnprocessableEntityException(String reason) {
+        this(reason, Collections.emptyList());
+    }
+
+    public UnprocessableEntityException(String reason, List<Violation> violations) {
         super(HttpStatus.UNPROCESSABLE_ENTITY, reason);
+        this.violations = violations;
+    }
+
+    public List<Violation> getViolations() {
+        return violations;
     }
 }
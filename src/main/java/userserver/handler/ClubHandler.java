@@ -3,28 +3,42 @@ package userserver.handler;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import userserver.domain.Club;
+import userserver.domain.User;
+import userserver.exception.BadRequestException;
+import userserver.repository.Cursor;
 import userserver.enums.JoinResult;
 import userserver.handler.model.ClubUserId;
+import userserver.handler.model.ClubUserResult;
 import userserver.handler.model.UserId;
 import userserver.handler.validator.ModelValidator;
 import userserver.service.ClubService;
 
 import java.net.URI;
-import java.util.Map;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
 
 import static org.springframework.web.reactive.function.BodyInserters.fromObject;
 import static org.springframework.web.reactive.function.BodyInserters.fromPublisher;
 import static org.springframework.web.reactive.function.server.ServerResponse.created;
 import static org.springframework.web.reactive.function.server.ServerResponse.ok;
+import static userserver.util.ServerRequestUtil.getBodies;
+import static userserver.util.ServerRequestUtil.getBody;
+import static userserver.util.ServerRequestUtil.getCursor;
+import static userserver.util.ServerRequestUtil.getIds;
+import static userserver.util.ServerRequestUtil.getIdsBody;
+import static userserver.util.ServerRequestUtil.getIntPathVariable;
 import static userserver.util.ServerRequestUtil.getPathVariable;
+import static userserver.util.ServerRequestUtil.getStreamingMediaType;
+import static userserver.util.ServerResponseUtil.okPage;
 
 @Component
 @RequiredArgsConstructor
@@ -42,12 +56,33 @@ public class ClubHandler {
     }
 
     public Mono<ServerResponse> getList(ServerRequest serverRequest) {
-        String pageStr = getPathVariable(serverRequest, "page");
-        int page = StringUtils.isEmpty(pageStr) ? 0 : Integer.parseInt(pageStr);
-        Flux<Club> body = clubService.getList(page);
+        OptionalInt page = getIntPathVariable(serverRequest, "page", clubService.getMaxPage());
+        Optional<MediaType> streaming = getStreamingMediaType(serverRequest);
+        if (streaming.isPresent()) {
+            Flux<Club> body = page.isPresent()
+                    ? clubService.getList(page.getAsInt())
+                    : clubService.getAll(getCursor(serverRequest));
+            return ok().contentType(streaming.get()).body(fromPublisher(body, Club.class));
+        }
+        if (!page.isPresent()) {
+            return okPage(clubService.getList(getCursor(serverRequest)), x -> new Cursor(x.getCreateDate(), x.getId()));
+        }
+        Flux<Club> body = clubService.getList(page.getAsInt());
         return ok().body(fromPublisher(body, Club.class));
     }
 
+    public Mono<ServerResponse> getByIds(ServerRequest serverRequest) {
+        return multiGet(getIds(serverRequest));
+    }
+
+    public Mono<ServerResponse> batchGet(ServerRequest serverRequest) {
+        return getIdsBody(serverRequest).flatMap(this::multiGet);
+    }
+
+    private Mono<ServerResponse> multiGet(List<String> ids) {
+        return ok().body(fromPublisher(clubService.getByIds(ids), Club.class));
+    }
+
     public Mono<ServerResponse> get(ServerRequest serverRequest) {
         Mono<ServerResponse> notFound = ServerResponse.notFound().build();
         String id = getPathVariable(serverRequest, "id");
@@ -56,41 +91,114 @@ public class ClubHandler {
                 .switchIfEmpty(notFound);
     }
 
+    public Mono<ServerResponse> getMembers(ServerRequest serverRequest) {
+        Mono<ServerResponse> notFound = ServerResponse.notFound().build();
+        String id = getPathVariable(serverRequest, "id");
+        Cursor cursor = getCursor(serverRequest);
+        Optional<MediaType> streaming = getStreamingMediaType(serverRequest);
+        return clubService.get(id)
+                .flatMap(club -> streaming.isPresent()
+                        ? ok().contentType(streaming.get()).body(fromPublisher(clubService.getAllMembers(id, cursor), User.class))
+                        : okPage(clubService.getMembers(id, cursor), x -> new Cursor(x.getCreateDate(), x.getId())))
+                .switchIfEmpty(notFound);
+    }
+
+    public Mono<ServerResponse> patch(ServerRequest serverRequest) {
+        Mono<ServerResponse> notFound = ServerResponse.notFound().build();
+        String id = getPathVariable(serverRequest, "id");
+        return serverRequest
+                .bodyToMono(Club.class)
+                .switchIfEmpty(Mono.error(new BadRequestException("nothing to patch")))
+                .flatMap(x -> validator.validate(x, x.toPatch().keySet()))
+                .flatMap(x -> clubService.patch(id, x))
+                .filter(x -> x > 0)
+                .flatMap(x -> ok().build())
+                .switchIfEmpty(notFound);
+    }
+
     public Mono<ServerResponse> delete(ServerRequest serverRequest) {
         String id = getPathVariable(serverRequest, "id");
         return clubService.delete(id)
                 .then(ok().build());
     }
 
+    /**
+     * body가 없거나, JSON이 잘못됐거나, clubId/userId가 없으면 400.
+     */
     public Mono<ServerResponse> join(ServerRequest serverRequest) {
-        return serverRequest.bodyToMono(Map.class)
+        return getBody(serverRequest, ClubUserId.class)
                 .flatMap(this::findUserAndClub);
     }
 
-    private Mono<ServerResponse> findUserAndClub(Map<String, String> map) {
+    private Mono<ServerResponse> findUserAndClub(ClubUserId ids) {
+        if (!hasIds(ids)) {
+            return Mono.error(new BadRequestException("clubId and userId are required"));
+        }
         Mono<ServerResponse> notFound = ServerResponse.notFound().build();
-        String clubId = map.get("clubId");
-        String userId = map.get("userId");
-        return clubService.join(clubId, userId)
+        return clubService.join(ids.getClubId(), ids.getUserId())
                 .flatMap(x -> {
                     if(x == JoinResult.NOT_FOUND) {
                         return notFound;
-                    } else if(x == JoinResult.FAIL_NOT_ALLOW_AGE || x == JoinResult.FAIL_CLUB_IS_JOINED) {
+                    } else if(x == JoinResult.FAIL_NOT_ALLOW_AGE || x == JoinResult.FAIL_CLUB_IS_JOINED || x == JoinResult.FAIL_CLUB_IS_FULL) {
                         return ServerResponse.status(HttpStatus.NOT_ACCEPTABLE).build();
                     }
                     return ok().build();
                 });
     }
 
+    /**
+     * JSON이 잘못됐거나 clubId/userId가 없는 pair가 있으면 아무것도 처리하지 않고 400.
+     */
+    public Mono<ServerResponse> joinBatch(ServerRequest serverRequest) {
+        return getPairs(serverRequest)
+                .flatMap(pairs -> batch(serverRequest, clubService.joinAll(Flux.fromIterable(pairs))));
+    }
+
+    /**
+     * JSON이 잘못됐거나 clubId/userId가 없는 pair가 있으면 아무것도 처리하지 않고 400.
+     */
+    public Mono<ServerResponse> leaveBatch(ServerRequest serverRequest) {
+        return getPairs(serverRequest)
+                .flatMap(pairs -> batch(serverRequest, clubService.leaveAll(Flux.fromIterable(pairs))));
+    }
+
+    private Mono<List<ClubUserId>> getPairs(ServerRequest serverRequest) {
+        return getBodies(serverRequest, ClubUserId.class)
+                .flatMap(pairs -> pairs.stream().allMatch(ClubHandler::hasIds)
+                        ? Mono.just(pairs)
+                        : Mono.error(new BadRequestException("clubId and userId are required")));
+    }
+
+    private static boolean hasIds(ClubUserId ids) {
+        return ids != null && ids.getClubId() != null && ids.getUserId() != null;
+    }
+
+    /**
+     * pair마다 결과를 요청 순서대로 준다. streaming media type을 accept 하면 처리되는 대로 흘려보낸다.
+     */
+    private Mono<ServerResponse> batch(ServerRequest serverRequest, Flux<ClubUserResult> results) {
+        Optional<MediaType> streaming = getStreamingMediaType(serverRequest);
+        return streaming.isPresent()
+                ? ok().contentType(streaming.get()).body(fromPublisher(results, ClubUserResult.class))
+                : ok().body(fromPublisher(results, ClubUserResult.class));
+    }
+
+    /**
+     * body가 없거나, JSON이 잘못됐거나, userId가 없으면 400.
+     */
     public Mono<ServerResponse> leave(ServerRequest serverRequest) {
         Mono<ServerResponse> notFound = ServerResponse.notFound().build();
-        return serverRequest.bodyToMono(UserId.class)
+        return getBody(serverRequest, UserId.class)
                 .flatMap(this::findUser)
                 .switchIfEmpty(notFound);
     }
 
     private Mono<ServerResponse> findUser(UserId m) {
+        if (m.getUserId() == null) {
+            return Mono.error(new BadRequestException("userId is required"));
+        }
         return clubService.leave(m.getUserId())
+                .filter(x -> x > 0)
                 .flatMap(x -> ok().build());
     }
 }
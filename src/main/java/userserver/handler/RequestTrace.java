@@ -0,0 +1,97 @@
+package userserver.handler;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * 요청 하나가 어디에 시간을 썼는지 모은다. Reactor Context에 RequestTrace.class key로 들어 있을 때만 기록된다.
+ */
+public class RequestTrace {
+    private final long start = System.nanoTime();
+    private final Queue<Span> spans = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 구독부터 끝날 때(complete, error, cancel)까지를 span으로 남긴다.
+     * doFinally는 downstream이 signal을 다 처리한 뒤에 불려서, 요청이 끝난 뒤에야 span이 남을 수 있다. 그래서 signal을 넘기기 전에 남긴다.
+     */
+    public static <T> Mono<T> timed(String name, Mono<T> source) {
+        return Mono.subscriberContext().flatMap(context -> {
+            RequestTrace trace = context.getOrDefault(RequestTrace.class, null);
+            if (trace == null) {
+                return source;
+            }
+            Runnable end = trace.start(name);
+            return source.doOnSuccess(x -> end.run()).doOnError(e -> end.run()).doOnCancel(end);
+        });
+    }
+
+    /**
+     * 이미 끝난 동기 호출에 걸린 시간을 구독할 때 span으로 남긴다.
+     */
+    public static <T> Mono<T> recorded(String name, long nanos, Mono<T> result) {
+        return Mono.subscriberContext().flatMap(context -> {
+            RequestTrace trace = context.getOrDefault(RequestTrace.class, null);
+            if (trace != null) {
+                trace.add(name, nanos);
+            }
+            return result;
+        });
+    }
+
+    public static <T> Flux<T> timed(String name, Flux<T> source) {
+        return Mono.subscriberContext().flatMapMany(context -> {
+            RequestTrace trace = context.getOrDefault(RequestTrace.class, null);
+            if (trace == null) {
+                return source;
+            }
+            Runnable end = trace.start(name);
+            return source.doOnTerminate(end).doOnCancel(end);
+        });
+    }
+
+    /**
+     * 처음 한 번만 span을 남기는 Runnable. cancel과 terminate가 겹쳐도 한 번만 남는다.
+     */
+    private Runnable start(String name) {
+        long start = System.nanoTime();
+        AtomicBoolean ended = new AtomicBoolean();
+        return () -> {
+            if (ended.compareAndSet(false, true)) {
+                add(name, System.nanoTime() - start);
+            }
+        };
+    }
+
+    public void add(String name, long nanos) {
+        spans.add(new Span(name, nanos));
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * "decode=1.2ms UserRepository.findById=3.4ms" 처럼 기록된 순서대로.
+     */
+    public String spans() {
+        return spans.stream()
+                .map(x -> String.format("%s=%.1fms", x.name, x.nanos / 1_000_000.0))
+                .collect(joining(" "));
+    }
+
+    private static class Span {
+        private final String name;
+        private final long nanos;
+
+        Span(String name, long nanos) {
+            this.name = name;
+            this.nanos = nanos;
+        }
+    }
+}
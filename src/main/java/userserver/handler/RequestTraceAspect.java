@@ -0,0 +1,51 @@
+package userserver.handler;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * repository 호출과 ModelValidator.validate를 RequestTrace span으로 남긴다.
+ */
+@Aspect
+@Component
+public class RequestTraceAspect {
+    @Around("this(userserver.repository.UserRepository)")
+    public Object userRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return timed("UserRepository", joinPoint);
+    }
+
+    @Around("this(userserver.repository.ClubRepository)")
+    public Object clubRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return timed("ClubRepository", joinPoint);
+    }
+
+    /**
+     * validate는 호출할 때 검사가 끝나므로 호출 시간을 잰다.
+     */
+    @Around("execution(* userserver.handler.validator.ModelValidator.validate(..))")
+    public Object validator(ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+        Object result = joinPoint.proceed();
+        long nanos = System.nanoTime() - start;
+        if (result instanceof Mono) {
+            return RequestTrace.recorded("ModelValidator." + joinPoint.getSignature().getName(), nanos, (Mono<?>) result);
+        }
+        return result;
+    }
+
+    private Object timed(String type, ProceedingJoinPoint joinPoint) throws Throwable {
+        Object result = joinPoint.proceed();
+        String name = type + "." + joinPoint.getSignature().getName();
+        if (result instanceof Mono) {
+            return RequestTrace.timed(name, (Mono<?>) result);
+        }
+        if (result instanceof Flux) {
+            return RequestTrace.timed(name, (Flux<?>) result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,172 @@
+package userserver.handler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * router filter로 route별 응답 시간(p50/p95/p99, histogram), status별 응답 수, 처리 중인 요청 수를 남긴다.
+ * Spring 5.0의 RouterFunction은 어떤 route가 match 됐는지 알려주지 않아서, route마다 named()로 이름을 붙인다.
+ */
+@Component
+public class RouteMetrics implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+    private static final String ROUTE_ATTRIBUTE = RouteMetrics.class.getName() + ".route";
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public RouteMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * handler가 불릴 때 request에 route 이름을 남긴다. route 이름은 path pattern 처럼 개수가 정해진 값만 쓴다.
+     */
+    public static HandlerFunction<ServerResponse> named(String route, HandlerFunction<ServerResponse> handler) {
+        return request -> {
+            request.attributes().put(ROUTE_ATTRIBUTE, route);
+            return handler.handle(request);
+        };
+    }
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Mono<ServerResponse> response;
+            try {
+                response = next.handle(request);
+            } catch (RuntimeException e) {
+                response = Mono.error(e);
+            }
+            Measurement measurement = new Measurement(routeOf(request), start);
+            return response
+                    .<ServerResponse>map(x -> new MeteredResponse(x, measurement))
+                    .doOnSuccess(x -> {
+                        if (x == null) {
+                            measurement.finish("200");
+                        }
+                    })
+                    .doOnError(e -> measurement.finish(String.valueOf(statusOf(e).value())))
+                    .doOnCancel(measurement::cancel);
+        });
+    }
+
+    /**
+     * 요청 하나의 측정. response를 만들기 전에 실패하거나 취소되면 filter에서, 아니면 response를 다 쓴 뒤에 한 번만 남긴다.
+     */
+    private class Measurement {
+        private final String route;
+        private final long start;
+        private final AtomicInteger running;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile boolean responded;
+
+        Measurement(String route, long start) {
+            this.route = route;
+            this.start = start;
+            this.running = inFlight(route);
+            running.incrementAndGet();
+        }
+
+        void finish(String status) {
+            if (done.compareAndSet(false, true)) {
+                running.decrementAndGet();
+                record(route, status, System.nanoTime() - start);
+            }
+        }
+
+        void cancel() {
+            if (!responded) {
+                finish("CANCELLED");
+            }
+        }
+    }
+
+    /**
+     * body를 쓰는 시간까지 재려고 writeTo가 끝나거나 취소될 때 남긴다. streaming 응답은 handler가 Mono를 바로 돌려주고 body는 나중에 쓴다.
+     */
+    private static class MeteredResponse implements ServerResponse {
+        private final ServerResponse delegate;
+        private final Measurement measurement;
+
+        MeteredResponse(ServerResponse delegate, Measurement measurement) {
+            this.delegate = delegate;
+            this.measurement = measurement;
+            measurement.responded = true;
+        }
+
+        @Override
+        public HttpStatus statusCode() {
+            return delegate.statusCode();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return delegate.headers();
+        }
+
+        @Override
+        public MultiValueMap<String, ResponseCookie> cookies() {
+            return delegate.cookies();
+        }
+
+        @Override
+        public Mono<Void> writeTo(ServerWebExchange exchange, ServerResponse.Context context) {
+            return delegate.writeTo(exchange, context)
+                    .doFinally(signal -> measurement.finish(
+                            signal == SignalType.CANCEL ? "CANCELLED" : String.valueOf(delegate.statusCode().value())));
+        }
+    }
+
+    private void record(String route, String status, long nanos) {
+        timers.computeIfAbsent(route, x -> Timer.builder("http.route.requests")
+                .tag("route", x)
+                .description("route latency")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder("http.route.responses")
+                .tag("route", route)
+                .tag("status", status)
+                .description("responses by status code")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private AtomicInteger inFlight(String route) {
+        return inFlight.computeIfAbsent(route, x ->
+                meterRegistry.gauge("http.route.in.flight", Tags.of("route", x), new AtomicInteger()));
+    }
+
+    static String routeOf(ServerRequest request) {
+        return (String) request.attributes().getOrDefault(ROUTE_ATTRIBUTE, UNKNOWN);
+    }
+
+    static HttpStatus statusOf(Throwable e) {
+        return e instanceof ResponseStatusException ? ((ResponseStatusException) e).getStatus() : HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+}
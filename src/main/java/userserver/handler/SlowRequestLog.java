@@ -0,0 +1,137 @@
+package userserver.handler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.reactive.function.server.support.ServerRequestWrapper;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * threshold보다 오래 걸린 요청만 한 줄로 남긴다. route, path variable과 ?ids, body decode, validate, repository 호출, response encode에 쓴 시간.
+ * span은 요청마다 RequestTrace에 모으고, 빠른 요청은 로그 없이 버린다.
+ * streaming 응답은 repository 조회가 response를 쓰는 중에 일어나서 encode에 같이 들어간다.
+ */
+@Slf4j
+@Component
+public class SlowRequestLog implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+    private final long thresholdNanos;
+
+    public SlowRequestLog(@Value("${clubservice.slow-request.threshold-millis}") long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        return Mono.defer(() -> {
+            RequestTrace trace = new RequestTrace();
+            Mono<ServerResponse> response;
+            try {
+                response = next.handle(new TracedRequest(request));
+            } catch (RuntimeException e) {
+                response = Mono.error(e);
+            }
+            return response
+                    .<ServerResponse>map(x -> new TracedResponse(x, request, trace))
+                    .doOnError(e -> finish(request, trace, RouteMetrics.statusOf(e)))
+                    .subscriberContext(Context.of(RequestTrace.class, trace));
+        });
+    }
+
+    private void finish(ServerRequest request, RequestTrace trace, HttpStatus status) {
+        long elapsed = trace.elapsedNanos();
+        if (elapsed < thresholdNanos) {
+            return;
+        }
+        log.warn("slow request route={} method={} status={} elapsedMs={} ids={} spans=[{}]",
+                RouteMetrics.routeOf(request), request.methodName(), status.value(),
+                TimeUnit.NANOSECONDS.toMillis(elapsed), ids(request), trace.spans());
+    }
+
+    private static Map<String, Object> ids(ServerRequest request) {
+        Map<String, Object> ids = new LinkedHashMap<>(request.pathVariables());
+        request.queryParam("ids").ifPresent(x -> ids.put("ids", x));
+        return ids;
+    }
+
+    /**
+     * body를 읽고 decode 하는 시간을 decode span으로 남긴다.
+     */
+    private static class TracedRequest extends ServerRequestWrapper {
+        TracedRequest(ServerRequest delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public <T> Mono<T> bodyToMono(Class<? extends T> elementClass) {
+            return RequestTrace.timed("decode", super.bodyToMono(elementClass));
+        }
+
+        @Override
+        public <T> Mono<T> bodyToMono(ParameterizedTypeReference<T> typeReference) {
+            return RequestTrace.timed("decode", super.bodyToMono(typeReference));
+        }
+
+        @Override
+        public <T> Flux<T> bodyToFlux(Class<? extends T> elementClass) {
+            return RequestTrace.timed("decode", super.bodyToFlux(elementClass));
+        }
+
+        @Override
+        public <T> Flux<T> bodyToFlux(ParameterizedTypeReference<T> typeReference) {
+            return RequestTrace.timed("decode", super.bodyToFlux(typeReference));
+        }
+    }
+
+    /**
+     * response를 쓰는 시간을 encode span으로 남기고, 다 쓰고 나서 느렸는지 본다.
+     */
+    private class TracedResponse implements ServerResponse {
+        private final ServerResponse delegate;
+        private final ServerRequest request;
+        private final RequestTrace trace;
+
+        TracedResponse(ServerResponse delegate, ServerRequest request, RequestTrace trace) {
+            this.delegate = delegate;
+            this.request = request;
+            this.trace = trace;
+        }
+
+        @Override
+        public HttpStatus statusCode() {
+            return delegate.statusCode();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return delegate.headers();
+        }
+
+        @Override
+        public MultiValueMap<String, ResponseCookie> cookies() {
+            return delegate.cookies();
+        }
+
+        @Override
+        public Mono<Void> writeTo(ServerWebExchange exchange, ServerResponse.Context context) {
+            return RequestTrace.timed("encode", delegate.writeTo(exchange, context))
+                    .doFinally(x -> finish(request, trace, delegate.statusCode()))
+                    .subscriberContext(x -> x.put(RequestTrace.class, trace));
+        }
+    }
+}
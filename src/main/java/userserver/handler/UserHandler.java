@@ -1,7 +1,7 @@
 package userserver.handler;
 
 import org.springframework.http.HttpMethod;
-import org.springframework.util.StringUtils;
+import org.springframework.http.MediaType;
 import reactor.core.publisher.Flux;
 import userserver.domain.Club;
 import userserver.handler.validator.ModelValidator;
@@ -13,14 +13,25 @@ import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Mono;
 import userserver.domain.User;
+import userserver.exception.BadRequestException;
+import userserver.repository.Cursor;
 
 import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
 
 import static org.springframework.web.reactive.function.BodyInserters.fromObject;
 import static org.springframework.web.reactive.function.BodyInserters.fromPublisher;
 import static org.springframework.web.reactive.function.server.ServerResponse.created;
 import static org.springframework.web.reactive.function.server.ServerResponse.ok;
+import static userserver.util.ServerRequestUtil.getCursor;
+import static userserver.util.ServerRequestUtil.getIds;
+import static userserver.util.ServerRequestUtil.getIdsBody;
+import static userserver.util.ServerRequestUtil.getIntPathVariable;
 import static userserver.util.ServerRequestUtil.getPathVariable;
+import static userserver.util.ServerRequestUtil.getStreamingMediaType;
+import static userserver.util.ServerResponseUtil.okPage;
 
 @Component
 @RequiredArgsConstructor
@@ -28,14 +39,34 @@ public class UserHandler {
     @NonNull private final UserService userService;
     @NonNull private final ModelValidator validator;
 
-
     public Mono<ServerResponse> getList(ServerRequest serverRequest) {
-        String pageStr = getPathVariable(serverRequest, "page");
-        int page = StringUtils.isEmpty(pageStr) ? 0 : Integer.parseInt(pageStr);
-        Flux<User> body = userService.getList(page);
+        OptionalInt page = getIntPathVariable(serverRequest, "page", userService.getMaxPage());
+        Optional<MediaType> streaming = getStreamingMediaType(serverRequest);
+        if (streaming.isPresent()) {
+            Flux<User> body = page.isPresent()
+                    ? userService.getList(page.getAsInt())
+                    : userService.getAll(getCursor(serverRequest));
+            return ok().contentType(streaming.get()).body(fromPublisher(body, User.class));
+        }
+        if (!page.isPresent()) {
+            return okPage(userService.getList(getCursor(serverRequest)), x -> new Cursor(x.getCreateDate(), x.getId()));
+        }
+        Flux<User> body = userService.getList(page.getAsInt());
         return ok().body(fromPublisher(body, User.class));
     }
 
+    public Mono<ServerResponse> getByIds(ServerRequest serverRequest) {
+        return multiGet(getIds(serverRequest));
+    }
+
+    public Mono<ServerResponse> batchGet(ServerRequest serverRequest) {
+        return getIdsBody(serverRequest).flatMap(this::multiGet);
+    }
+
+    private Mono<ServerResponse> multiGet(List<String> ids) {
+        return ok().body(fromPublisher(userService.getByIds(ids), User.class));
+    }
+
     public Mono<ServerResponse> get(ServerRequest serverRequest) {
         Mono<ServerResponse> notFound = ServerResponse.notFound().build();
         String id = getPathVariable(serverRequest, "id");
@@ -53,6 +84,19 @@ public class UserHandler {
                             created(URI.create("/api/user")).build() : ok().build() );
     }
 
+    public Mono<ServerResponse> patch(ServerRequest serverRequest) {
+        Mono<ServerResponse> notFound = ServerResponse.notFound().build();
+        String id = getPathVariable(serverRequest, "id");
+        return serverRequest
+                .bodyToMono(User.class)
+                .switchIfEmpty(Mono.error(new BadRequestException("nothing to patch")))
+                .flatMap(x -> validator.validate(x, x.toPatch().keySet()))
+                .flatMap(x -> userService.patch(id, x))
+                .filter(x -> x > 0)
+                .flatMap(x -> ok().build())
+                .switchIfEmpty(notFound);
+    }
+
     public Mono<ServerResponse> delete(ServerRequest serverRequest) {
         String id = getPathVariable(serverRequest, "id");
         return userService.delete(id)
@@ -60,9 +104,11 @@ public class UserHandler {
     }
 
     public Mono<ServerResponse> getClub(ServerRequest serverRequest) {
+        Mono<ServerResponse> notFound = ServerResponse.notFound().build();
         String id = getPathVariable(serverRequest, "id");
         Mono<Club> club = userService.getClub(id);
         return club
-                .flatMap(x -> ok().body(fromObject(x)));
+                .flatMap(x -> ok().body(fromObject(x)))
+                .switchIfEmpty(notFound);
     }
 }
@@ -0,0 +1,24 @@
+package userserver.handler;
+
+import org.springframework.boot.web.reactive.error.DefaultErrorAttributes;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import userserver.exception.UnprocessableEntityException;
+
+import java.util.Map;
+
+/**
+ * 422 응답 body에 어떤 field가 왜 틀렸는지(violations)를 같이 내보낸다.
+ */
+@Component
+public class ViolationErrorAttributes extends DefaultErrorAttributes {
+    @Override
+    public Map<String, Object> getErrorAttributes(ServerRequest request, boolean includeStackTrace) {
+        Map<String, Object> attributes = super.getErrorAttributes(request, includeStackTrace);
+        Throwable error = getError(request);
+        if (error instanceof UnprocessableEntityException) {
+            attributes.put("violations", ((UnprocessableEntityException) error).getViolations());
+        }
+        return attributes;
+    }
+}
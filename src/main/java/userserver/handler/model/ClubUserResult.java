@@ -0,0 +1,15 @@
+package userserver.handler.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import userserver.enums.JoinResult;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClubUserResult {
+    private String clubId;
+    private String userId;
+    private JoinResult result;
+}
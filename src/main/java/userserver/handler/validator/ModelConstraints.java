@@ -0,0 +1,212 @@
+package userserver.handler.validator;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.context.i18n.LocaleContextHolder;
+
+import javax.validation.MessageInterpolator;
+import javax.validation.ValidationException;
+import javax.validation.Validator;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import javax.validation.constraints.Size;
+import javax.validation.groups.Default;
+import javax.validation.metadata.BeanDescriptor;
+import javax.validation.metadata.ConstraintDescriptor;
+import javax.validation.metadata.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * class 하나의 Bean Validation constraint를 시작할 때 한 번 getter + predicate + message 목록으로 바꿔둔다.
+ * 검사할 때는 reflection metadata 없이 getter를 부르고 predicate만 돌린다. message는 locale마다 처음 쓸 때 한 번만 만든다.
+ * class level, cascade(@Valid), group, composing, 아래에 없는 constraint가 하나라도 있으면 compile 하지 않는다. (javax Validator로 검사)
+ */
+class ModelConstraints {
+    private final List<Check> checks;
+    private final MessageInterpolator interpolator;
+
+    private ModelConstraints(List<Check> checks, MessageInterpolator interpolator) {
+        this.checks = checks;
+        this.interpolator = interpolator;
+    }
+
+    static Optional<ModelConstraints> compile(Class<?> type, Validator validator, MessageInterpolator interpolator) {
+        BeanDescriptor bean = validator.getConstraintsForClass(type);
+        if (!bean.getConstraintDescriptors().isEmpty()) {
+            return Optional.empty();
+        }
+        List<Check> checks = new ArrayList<>();
+        for (PropertyDescriptor property : bean.getConstrainedProperties()) {
+            java.beans.PropertyDescriptor accessor = BeanUtils.getPropertyDescriptor(type, property.getPropertyName());
+            Method getter = accessor == null ? null : accessor.getReadMethod();
+            if (getter == null || property.isCascaded()) {
+                return Optional.empty();
+            }
+            for (ConstraintDescriptor<?> constraint : property.getConstraintDescriptors()) {
+                Predicate<Object> valid = compile(constraint, getter.getReturnType());
+                if (valid == null) {
+                    return Optional.empty();
+                }
+                checks.add(new Check(property.getPropertyName(), getter, valid, constraint));
+            }
+        }
+        return Optional.of(new ModelConstraints(checks, interpolator));
+    }
+
+    /**
+     * properties가 null이면 전부.
+     */
+    List<Violation> validate(Object model, Collection<String> properties) {
+        List<Violation> violations = null;
+        for (Check check : checks) {
+            if (properties != null && !properties.contains(check.property)) {
+                continue;
+            }
+            if (!check.valid.test(check.get(model))) {
+                if (violations == null) {
+                    violations = new ArrayList<>();
+                }
+                violations.add(new Violation(check.property, check.constraint, check.message(interpolator, LocaleContextHolder.getLocale())));
+            }
+        }
+        return violations == null ? Collections.emptyList() : violations;
+    }
+
+    /**
+     * null이면 compile 할 수 없는 constraint.
+     */
+    private static Predicate<Object> compile(ConstraintDescriptor<?> constraint, Class<?> valueType) {
+        if (!constraint.getGroups().equals(Collections.singleton(Default.class)) || !constraint.getComposingConstraints().isEmpty()) {
+            return null;
+        }
+        Class<?> type = constraint.getAnnotation().annotationType();
+        Map<String, Object> attributes = constraint.getAttributes();
+        if (type == NotNull.class) {
+            return Objects::nonNull;
+        }
+        if (type == NotBlank.class && CharSequence.class.isAssignableFrom(valueType)) {
+            // hibernate validator와 같이 trim (' ' 이하의 문자를 공백으로 본다. Character.isWhitespace가 아님)
+            return x -> x != null && x.toString().trim().length() > 0;
+        }
+        if (type == NotEmpty.class && isSized(valueType)) {
+            return x -> x != null && sizeOf(x) > 0;
+        }
+        if (type == Size.class && isSized(valueType)) {
+            int min = (Integer) attributes.get("min");
+            int max = (Integer) attributes.get("max");
+            return x -> x == null || (sizeOf(x) >= min && sizeOf(x) <= max);
+        }
+        if (!isIntegral(valueType)) {
+            return null;
+        }
+        if (type == Positive.class) {
+            return x -> x == null || ((Number) x).longValue() > 0;
+        }
+        if (type == PositiveOrZero.class) {
+            return x -> x == null || ((Number) x).longValue() >= 0;
+        }
+        if (type == Min.class) {
+            long min = (Long) attributes.get("value");
+            return x -> x == null || ((Number) x).longValue() >= min;
+        }
+        if (type == Max.class) {
+            long max = (Long) attributes.get("value");
+            return x -> x == null || ((Number) x).longValue() <= max;
+        }
+        return null;
+    }
+
+    private static boolean isSized(Class<?> type) {
+        return CharSequence.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)
+                || Map.class.isAssignableFrom(type) || type.isArray();
+    }
+
+    private static boolean isIntegral(Class<?> type) {
+        return type == Integer.class || type == Long.class || type == Short.class || type == Byte.class
+                || type == int.class || type == long.class || type == short.class || type == byte.class;
+    }
+
+    private static int sizeOf(Object value) {
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).size();
+        }
+        return Array.getLength(value);
+    }
+
+    /**
+     * 지원하는 constraint의 message는 값에 따라 바뀌지 않으므로 ({min}, {max} 같은 attribute만 쓴다) locale이 같으면 같다.
+     */
+    private static String message(ConstraintDescriptor<?> constraint, MessageInterpolator interpolator, Locale locale) {
+        try {
+            return interpolator.interpolate(constraint.getMessageTemplate(), new MessageInterpolator.Context() {
+                @Override
+                public ConstraintDescriptor<?> getConstraintDescriptor() {
+                    return constraint;
+                }
+
+                @Override
+                public Object getValidatedValue() {
+                    return null;
+                }
+
+                @Override
+                public <T> T unwrap(Class<T> type) {
+                    throw new ValidationException("unwrap is not supported");
+                }
+            }, locale);
+        } catch (ValidationException e) {
+            return constraint.getMessageTemplate();
+        }
+    }
+
+    private static class Check {
+        private final String property;
+        private final Method getter;
+        private final Predicate<Object> valid;
+        private final ConstraintDescriptor<?> descriptor;
+        private final String constraint;
+        private final Map<Locale, String> messages = new ConcurrentHashMap<>();
+
+        Check(String property, Method getter, Predicate<Object> valid, ConstraintDescriptor<?> descriptor) {
+            this.property = property;
+            this.getter = getter;
+            this.valid = valid;
+            this.descriptor = descriptor;
+            this.constraint = descriptor.getAnnotation().annotationType().getSimpleName();
+        }
+
+        Object get(Object model) {
+            try {
+                return getter.invoke(model);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("can not read " + property, e);
+            }
+        }
+
+        String message(MessageInterpolator interpolator, Locale locale) {
+            return messages.computeIfAbsent(locale, x -> ModelConstraints.message(descriptor, interpolator, x));
+        }
+    }
+}
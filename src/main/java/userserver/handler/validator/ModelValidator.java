@@ -1,31 +1,87 @@
 package userserver.handler.validator;
 
-import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Mono;
+import userserver.domain.Club;
+import userserver.domain.User;
 import userserver.exception.UnprocessableEntityException;
 
 import javax.validation.ConstraintViolation;
+import javax.validation.MessageInterpolator;
+import javax.validation.Validation;
 import javax.validation.Validator;
-import java.util.Set;
+import javax.validation.ValidatorFactory;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
-import static org.springframework.web.reactive.function.server.ServerResponse.unprocessableEntity;
+import static java.util.stream.Collectors.toList;
 
-@AllArgsConstructor
+/**
+ * 검사는 호출할 때 바로 끝나고, 결과를 Mono.just(model)이나 Mono.error(422)로 돌려준다.
+ * class마다 constraint를 한 번 ModelConstraints로 compile 해두고 (User, Club은 시작할 때), compile 할 수 없는 class만 javax Validator로 검사한다.
+ */
 @Component
 public class ModelValidator {
     private final Validator validator;
+    private final MessageInterpolator interpolator;
+    private final Map<Class<?>, Optional<ModelConstraints>> constraints = new ConcurrentHashMap<>();
+
+    public ModelValidator(Validator validator) {
+        this.validator = validator;
+        this.interpolator = interpolatorOf(validator);
+        Stream.of(User.class, Club.class).forEach(this::constraintsOf);
+    }
 
     public <T> Mono<T> validate(T model) {
-        return Mono.just(model).handle((x, sink) -> {
-            Set<ConstraintViolation<T>> set = validator.validate(model);
-            if(set.isEmpty()) {
-                sink.next(x);
-            } else {
-                sink.error(new UnprocessableEntityException("unprocessable entify"));
-            }
-        });
+        return result(model, violations(model, null));
+    }
+
+    /**
+     * 주어진 property만 검사한다. (PATCH)
+     */
+    public <T> Mono<T> validate(T model, Collection<String> properties) {
+        return result(model, violations(model, properties));
+    }
+
+    /**
+     * properties가 null이면 전부.
+     */
+    public List<Violation> violations(Object model, Collection<String> properties) {
+        Optional<ModelConstraints> compiled = constraintsOf(model.getClass());
+        if (compiled.isPresent()) {
+            return compiled.get().validate(model, properties);
+        }
+        Stream<ConstraintViolation<Object>> violations = properties == null
+                ? validator.validate(model).stream()
+                : properties.stream().flatMap(x -> validator.validateProperty(model, x).stream());
+        return violations
+                .map(x -> new Violation(x.getPropertyPath().toString(),
+                        x.getConstraintDescriptor().getAnnotation().annotationType().getSimpleName(), x.getMessage()))
+                .collect(toList());
     }
 
+    /**
+     * spring이 만든 Validator(LocalValidatorFactoryBean)면 그 interpolator를 써서 MessageSource와 LocaleContextHolder의 locale을 따른다.
+     */
+    private static MessageInterpolator interpolatorOf(Validator validator) {
+        if (validator instanceof ValidatorFactory) {
+            return ((ValidatorFactory) validator).getMessageInterpolator();
+        }
+        return Validation.byDefaultProvider().configure().getDefaultMessageInterpolator();
+    }
+
+    private Optional<ModelConstraints> constraintsOf(Class<?> type) {
+        return constraints.computeIfAbsent(type, x -> ModelConstraints.compile(x, validator, interpolator));
+    }
+
+    private static <T> Mono<T> result(T model, List<Violation> violations) {
+        if (violations.isEmpty()) {
+            return Mono.just(model);
+        }
+        return Mono.error(new UnprocessableEntityException("invalid " + model.getClass().getSimpleName(), violations));
+    }
 }
@@ -0,0 +1,18 @@
+package userserver.handler.validator;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * field 하나가 constraint 하나를 어긴 것. 422 응답의 violations로 나간다.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Violation {
+    private String field;
+    /** constraint annotation 이름 (NotBlank, Size, ...) */
+    private String constraint;
+    private String message;
+}
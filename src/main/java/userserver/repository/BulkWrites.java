@@ -0,0 +1,61 @@
+package userserver.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.WriteError;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BulkWrites {
+    private static final MongoExceptionTranslator EXCEPTION_TRANSLATOR = new MongoExceptionTranslator();
+
+    /**
+     * unordered bulkWrite. 실패한 write만 index -> 예외(DuplicateKeyException 등)로 돌려준다.
+     */
+    public static Mono<Map<Integer, Throwable>> execute(ReactiveMongoOperations mongoOperations, Class<?> type,
+                                                        List<WriteModel<Document>> writes) {
+        MongoCollection<Document> collection = mongoOperations.getCollection(
+                mongoOperations.getConverter().getMappingContext().getRequiredPersistentEntity(type).getCollection());
+        return Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false)))
+                .then(Mono.<Map<Integer, Throwable>>just(Collections.emptyMap()))
+                .onErrorResume(MongoBulkWriteException.class, e -> {
+                    Map<Integer, Throwable> errors = new HashMap<>();
+                    for (BulkWriteError error : e.getWriteErrors()) {
+                        errors.put(error.getIndex(), translate(new MongoWriteException(
+                                new WriteError(error.getCode(), error.getMessage(), error.getDetails()), e.getServerAddress())));
+                    }
+                    return Mono.just(errors);
+                })
+                .onErrorMap(RuntimeException.class, BulkWrites::translate);
+    }
+
+    /**
+     * save와 같이 id가 없으면 새 ObjectId를 정하고, entity를 저장될 Document로 바꾼다.
+     */
+    public static Document toDocument(ReactiveMongoOperations mongoOperations, Object entity) {
+        Document document = new Document();
+        mongoOperations.getConverter().write(entity, document);
+        return document;
+    }
+
+    public static String newId() {
+        return new ObjectId().toHexString();
+    }
+
+    private static Throwable translate(RuntimeException e) {
+        Throwable translated = EXCEPTION_TRANSLATOR.translateExceptionIfPossible(e);
+        return translated == null ? e : translated;
+    }
+}
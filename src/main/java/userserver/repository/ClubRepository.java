@@ -1,8 +1,17 @@
 package userserver.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.reactive.ReactiveSortingRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import userserver.domain.Club;
 
-public interface ClubRepository extends ReactiveSortingRepository<Club, String> {
+public interface ClubRepository extends ReactiveSortingRepository<Club, String>, ClubRepositoryCustom {
+    Flux<Club> findAllBy(Pageable pageable);
 
+    /**
+     * findById 없이 한번에 지운다.
+     * @return 지워진 document 수
+     */
+    Mono<Long> removeById(String id);
 }
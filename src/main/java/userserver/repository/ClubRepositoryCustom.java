@@ -0,0 +1,53 @@
+package userserver.repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import userserver.domain.Club;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ClubRepositoryCustom {
+    Flux<Club> findAllAfter(Cursor cursor, int limit);
+
+    /**
+     * 주어진 필드만 $set 한다.
+     * @return 찾은 document 수
+     */
+    Mono<Long> patch(String id, Map<String, Object> fields);
+
+    /**
+     * memberCount는 건드리지 않고 저장한다. id가 없으면 insert, 있으면 나머지 필드만 $set (없으면 upsert).
+     */
+    Mono<Club> saveDetails(Club club);
+
+    /**
+     * 여러 club을 하나의 unordered bulkWrite로 saveDetails 한다.
+     * @return 실패한 club의 index -> 예외
+     */
+    Mono<Map<Integer, Throwable>> bulkSaveDetails(List<Club> clubs);
+
+    /**
+     * memberCount를 $inc 한다.
+     * @return 바뀐 club. club이 없으면 empty
+     */
+    Mono<Club> incrementMemberCount(String clubId, long delta);
+
+    /**
+     * maxMembers가 아직 주어진 값이고 seats 만큼 자리가 남아 있을 때만 memberCount를 seats 만큼 올린다.
+     * 조건 확인과 $inc가 한 번의 findAndModify 이다.
+     * @return 자리를 잡았으면 바뀐 club. club이 없거나, 자리가 모자라거나, maxMembers가 바뀌었으면 empty
+     */
+    Mono<Club> reserveSeats(String clubId, Integer maxMembers, int seats);
+
+    /**
+     * id와 memberCount만 projection 해서 읽는다.
+     */
+    Flux<Club> findAllMemberCounts();
+
+    /**
+     * memberCount가 아직 expected 일 때만 actual로 바꾼다.
+     * @return 바뀌었으면 true
+     */
+    Mono<Boolean> resetMemberCount(String clubId, long expected, long actual);
+}
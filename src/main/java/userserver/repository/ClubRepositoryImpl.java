@@ -0,0 +1,112 @@
+package userserver.repository;
+
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import lombok.NonNull;
+import org.bson.Document;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import userserver.domain.Club;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RequiredArgsConstructor
+public class ClubRepositoryImpl implements ClubRepositoryCustom {
+    @NonNull private final ReactiveMongoOperations mongoOperations;
+
+    @Override
+    public Flux<Club> findAllAfter(Cursor cursor, int limit) {
+        return mongoOperations.find(Cursor.query(cursor, limit), Club.class);
+    }
+
+    @Override
+    public Mono<Long> patch(String id, Map<String, Object> fields) {
+        Update update = new Update();
+        fields.forEach(update::set);
+        return mongoOperations.updateFirst(query(where("id").is(id)), update, Club.class)
+                .map(UpdateResult::getMatchedCount);
+    }
+
+    @Override
+    public Mono<Club> saveDetails(Club club) {
+        if (club.getId() == null) {
+            club.setMemberCount(0);
+            return mongoOperations.insert(club);
+        }
+        Update update = new Update()
+                .set("name", club.getName())
+                .set("minAgeForJoin", club.getMinAgeForJoin())
+                .set("createDate", club.getCreateDate())
+                .set("maxMembers", club.getMaxMembers())
+                .setOnInsert("memberCount", 0L);
+        return mongoOperations.findAndModify(query(where("id").is(club.getId())), update,
+                options().returnNew(true).upsert(true), Club.class);
+    }
+
+    @Override
+    public Mono<Map<Integer, Throwable>> bulkSaveDetails(List<Club> clubs) {
+        List<WriteModel<Document>> writes = clubs.stream()
+                .map(x -> {
+                    if (x.getId() == null) {
+                        x.setId(BulkWrites.newId());
+                        x.setMemberCount(0);
+                        return new InsertOneModel<>(BulkWrites.toDocument(mongoOperations, x));
+                    }
+                    Document details = new Document("name", x.getName())
+                            .append("minAgeForJoin", x.getMinAgeForJoin())
+                            .append("createDate", x.getCreateDate())
+                            .append("maxMembers", x.getMaxMembers());
+                    return new UpdateOneModel<Document>(new Document("_id", MongoIds.toObjectId(x.getId())),
+                            new Document("$set", details).append("$setOnInsert", new Document("memberCount", 0L)),
+                            new UpdateOptions().upsert(true));
+                })
+                .collect(toList());
+        return BulkWrites.execute(mongoOperations, Club.class, writes);
+    }
+
+    @Override
+    public Mono<Club> incrementMemberCount(String clubId, long delta) {
+        return mongoOperations.findAndModify(query(where("id").is(clubId)), new Update().inc("memberCount", delta),
+                options().returnNew(true), Club.class);
+    }
+
+    @Override
+    public Mono<Club> reserveSeats(String clubId, Integer maxMembers, int seats) {
+        Criteria criteria = where("id").is(clubId).and("maxMembers").is(maxMembers);
+        if (maxMembers != null) {
+            criteria = criteria.and("memberCount").lte(maxMembers - seats);
+        }
+        return mongoOperations.findAndModify(query(criteria), new Update().inc("memberCount", seats),
+                options().returnNew(true), Club.class);
+    }
+
+    @Override
+    public Flux<Club> findAllMemberCounts() {
+        Query query = new Query();
+        query.fields().include("memberCount");
+        return mongoOperations.find(query, Club.class);
+    }
+
+    @Override
+    public Mono<Boolean> resetMemberCount(String clubId, long expected, long actual) {
+        // memberCount가 없는 예전 document는 0으로 읽힌다.
+        Criteria memberCount = expected == 0 ? where("memberCount").in(0L, null) : where("memberCount").is(expected);
+        return mongoOperations.updateFirst(query(where("id").is(clubId).andOperator(memberCount)),
+                Update.update("memberCount", actual), Club.class)
+                .map(x -> x.getModifiedCount() == 1);
+    }
+}
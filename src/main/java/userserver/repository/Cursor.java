@@ -0,0 +1,61 @@
+package userserver.repository;
+
+import lombok.NonNull;
+import lombok.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * keyset pagination 위치. 마지막으로 읽은 document의 (createDate, _id)를 opaque token으로 주고 받는다.
+ * (createDate, _id) compound index를 타기 때문에 몇번째 페이지든 비용이 같다.
+ */
+@Value
+public class Cursor {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final Sort SORT = Sort.by(Sort.Order.asc("createDate"), Sort.Order.asc("id"));
+
+    @NonNull private final Date createDate;
+    @NonNull private final String id;
+
+    public String encode() {
+        String raw = createDate.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException token 형식이 잘못된 경우
+     */
+    public static Cursor decode(String token) {
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int separator = raw.indexOf(':');
+        if (separator < 1 || separator == raw.length() - 1) {
+            throw new IllegalArgumentException("invalid cursor: " + token);
+        }
+        long time = Long.parseLong(raw.substring(0, separator));
+        return new Cursor(new Date(time), raw.substring(separator + 1));
+    }
+
+    /**
+     * cursor 다음 document부터 limit개를 읽는 query. cursor가 null이면 처음부터, limit이 0이면 끝까지 읽는다.
+     */
+    public static Query query(Cursor cursor, int limit) {
+        Query query = new Query();
+        if (cursor != null) {
+            query.addCriteria(cursor.after());
+        }
+        return query.with(SORT).limit(limit);
+    }
+
+    Criteria after() {
+        return new Criteria().orOperator(
+                where("createDate").gt(createDate),
+                where("createDate").is(createDate).and("id").gt(MongoIds.toObjectId(id)));
+    }
+}
@@ -0,0 +1,88 @@
+package userserver.repository;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * mongo command마다 collection, command 이름으로 걸린 시간(mongodb.command)과 결과 document 수(mongodb.command.documents)를 남긴다.
+ * 시간은 driver가 잰 것이라 app에서 decode 하는 시간은 빠진다.
+ */
+public class MongoCommandMetrics implements CommandListener {
+    private static final String NONE = "none";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Integer, String> collections = new ConcurrentHashMap<>();
+
+    public MongoCommandMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        collections.put(event.getRequestId(), collectionOf(event.getCommandName(), event.getCommand()));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        String collection = collections.remove(event.getRequestId());
+        record(collection, event.getCommandName(), "success", event.getElapsedTime(TimeUnit.NANOSECONDS));
+        DistributionSummary.builder("mongodb.command.documents")
+                .tag("collection", collection == null ? NONE : collection)
+                .tag("command", event.getCommandName())
+                .description("documents returned or written by a command")
+                .register(meterRegistry)
+                .record(documentsOf(event.getResponse()));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        String collection = collections.remove(event.getRequestId());
+        record(collection, event.getCommandName(), "failure", event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    private void record(String collection, String command, String status, long nanos) {
+        Timer.builder("mongodb.command")
+                .tag("collection", collection == null ? NONE : collection)
+                .tag("command", command)
+                .tag("status", status)
+                .description("mongo command latency measured by the driver")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * find, insert, update, aggregate 등은 첫 필드 값이 collection 이름이고 getMore는 collection 필드에 있다.
+     */
+    static String collectionOf(String commandName, BsonDocument command) {
+        BsonValue value = "getMore".equals(commandName) ? command.get("collection") : command.get(commandName);
+        return value != null && value.isString() ? value.asString().getValue() : NONE;
+    }
+
+    /**
+     * cursor 응답은 batch 크기, write 응답은 n.
+     */
+    static int documentsOf(BsonDocument response) {
+        BsonDocument cursor = response.getDocument("cursor", null);
+        if (cursor != null) {
+            if (cursor.isArray("firstBatch")) {
+                return cursor.getArray("firstBatch").size();
+            }
+            if (cursor.isArray("nextBatch")) {
+                return cursor.getArray("nextBatch").size();
+            }
+        }
+        return response.isNumber("n") ? response.getNumber("n").intValue() : 0;
+    }
+}
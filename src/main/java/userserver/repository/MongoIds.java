@@ -0,0 +1,12 @@
+package userserver.repository;
+
+import org.bson.types.ObjectId;
+
+public class MongoIds {
+    /**
+     * spring data와 같은 규칙으로 String id를 저장된 _id 타입으로 바꾼다.
+     */
+    public static Object toObjectId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+}
@@ -0,0 +1,106 @@
+package userserver.repository;
+
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * server별 connection pool 크기, 사용중인 connection 수, 기다리는 요청 수를 gauge로 남긴다.
+ * driver 3.6에는 checkout 시작 event가 없어서, wait queue에 들어가고 나온 event를 들어온 순서대로 짝지어 대기 시간(mongodb.pool.wait)을 잰다.
+ */
+public class MongoPoolMetrics implements ConnectionPoolListener {
+    private final MeterRegistry meterRegistry;
+    private final Map<ServerId, Pool> pools = new ConcurrentHashMap<>();
+
+    public MongoPoolMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void connectionPoolOpened(ConnectionPoolOpenedEvent event) {
+        pool(event.getServerId()).maxSize.set(event.getSettings().getMaxSize());
+    }
+
+    @Override
+    public void connectionPoolClosed(ConnectionPoolClosedEvent event) {
+        Pool pool = pools.get(event.getServerId());
+        if (pool != null) {
+            pool.size.set(0);
+            pool.checkedOut.set(0);
+            pool.waiting.set(0);
+            pool.waitStarts.clear();
+        }
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        pool(event.getConnectionId().getServerId()).checkedOut.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        pool(event.getConnectionId().getServerId()).checkedOut.decrementAndGet();
+    }
+
+    @Override
+    public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event) {
+        Pool pool = pool(event.getServerId());
+        pool.waiting.incrementAndGet();
+        pool.waitStarts.add(System.nanoTime());
+    }
+
+    @Override
+    public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event) {
+        Pool pool = pool(event.getServerId());
+        pool.waiting.decrementAndGet();
+        Long start = pool.waitStarts.poll();
+        if (start != null) {
+            pool.wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void connectionAdded(ConnectionAddedEvent event) {
+        pool(event.getConnectionId().getServerId()).size.incrementAndGet();
+    }
+
+    @Override
+    public void connectionRemoved(ConnectionRemovedEvent event) {
+        pool(event.getConnectionId().getServerId()).size.decrementAndGet();
+    }
+
+    private Pool pool(ServerId serverId) {
+        return pools.computeIfAbsent(serverId, x -> new Pool(x.getAddress().toString()));
+    }
+
+    private class Pool {
+        private final AtomicInteger maxSize;
+        private final AtomicInteger size;
+        private final AtomicInteger checkedOut;
+        private final AtomicInteger waiting;
+        private final Queue<Long> waitStarts = new ConcurrentLinkedQueue<>();
+        private final Timer wait;
+
+        Pool(String server) {
+            Tags tags = Tags.of("server", server);
+            this.maxSize = meterRegistry.gauge("mongodb.pool.max.size", tags, new AtomicInteger());
+            this.size = meterRegistry.gauge("mongodb.pool.size", tags, new AtomicInteger());
+            this.checkedOut = meterRegistry.gauge("mongodb.pool.checked.out", tags, new AtomicInteger());
+            this.waiting = meterRegistry.gauge("mongodb.pool.wait.queue.size", tags, new AtomicInteger());
+            this.wait = Timer.builder("mongodb.pool.wait")
+                    .tags(tags)
+                    .description("time spent in the connection pool wait queue")
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+        }
+    }
+}
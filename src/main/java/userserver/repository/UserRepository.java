@@ -1,5 +1,6 @@
 package userserver.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.data.repository.reactive.ReactiveSortingRepository;
@@ -9,6 +10,8 @@ import userserver.domain.User;
 
 import java.util.Scanner;
 
-public interface UserRepository extends ReactiveSortingRepository<User, String> {
+public interface UserRepository extends ReactiveSortingRepository<User, String>, UserRepositoryCustom {
     Flux<User> findByClubId(String id);
+
+    Flux<User> findAllBy(Pageable pageable);
 }
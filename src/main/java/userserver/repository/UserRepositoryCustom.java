@@ -0,0 +1,80 @@
+package userserver.repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import userserver.domain.Club;
+import userserver.domain.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface UserRepositoryCustom {
+    Flux<User> findAllAfter(Cursor cursor, int limit);
+
+    /**
+     * 주어진 필드만 $set 한다.
+     * @return 찾은 document 수
+     */
+    Mono<Long> patch(String id, Map<String, Object> fields);
+
+    /**
+     * (clubId, createDate, _id) index 순서로 cursor 다음 member를 limit개 읽는다. clubId는 projection에서 뺀다.
+     */
+    Flux<User> findMembersAfter(String clubId, Cursor cursor, int limit);
+
+    /**
+     * 클럽에 가입되어 있지 않고 minAgeForJoin 이상인 user만 clubId를 설정한다. 한번의 conditional update.
+     * @return 가입 되었으면 true
+     */
+    Mono<Boolean> joinClub(String userId, String clubId, int minAgeForJoin);
+
+    /**
+     * clubId는 건드리지 않고 저장한다. (가입/탈퇴는 join/leave로만) id가 없으면 clubId 없이 insert, 있으면 나머지 필드만 $set (없으면 upsert).
+     */
+    Mono<User> saveDetails(User user);
+
+    /**
+     * 여러 user를 하나의 unordered bulkWrite로 saveDetails 한다.
+     * @return 실패한 user의 index -> 예외
+     */
+    Mono<Map<Integer, Throwable>> bulkSaveDetails(List<User> users);
+
+    /**
+     * clubId별로 UpdateMany 하나씩, 하나의 unordered bulkWrite로 가입시킨다. 조건은 joinClub과 같다.
+     * @return 가입된 user 수
+     */
+    Mono<Long> joinClubs(Map<Club, ? extends Collection<String>> userIdsByClub);
+
+    /**
+     * clubId별로 아직 그 club에 가입되어 있는 user만 하나의 unordered bulkWrite로 탈퇴시킨다.
+     * @return 탈퇴된 user 수
+     */
+    Mono<Long> leaveClubs(Map<String, ? extends Collection<String>> userIdsByClub);
+
+    /**
+     * clubId, age만 projection 해서 읽는다.
+     */
+    Flux<User> findMembershipsByIds(Collection<String> userIds);
+
+    /**
+     * clubId를 $unset 한다.
+     * @return 바뀌기 전의 user (clubId만 projection). user가 없으면 empty
+     */
+    Mono<User> leaveClub(String userId);
+
+    /**
+     * @return 지워진 user (clubId만 projection). user가 없으면 empty
+     */
+    Mono<User> findAndRemove(String userId);
+
+    /**
+     * clubId별 실제 member 수.
+     */
+    Mono<Map<String, Long>> countMembersByClub();
+
+    /**
+     * clubId 필드만 projection 해서 읽는다. user가 없거나 클럽에 가입되어 있지 않으면 empty.
+     */
+    Mono<String> findClubIdById(String userId);
+}
@@ -0,0 +1,177 @@
+package userserver.repository;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import userserver.domain.Club;
+import userserver.domain.User;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@RequiredArgsConstructor
+public class UserRepositoryImpl implements UserRepositoryCustom {
+    @NonNull private final ReactiveMongoOperations mongoOperations;
+
+    @Override
+    public Flux<User> findAllAfter(Cursor cursor, int limit) {
+        return mongoOperations.find(Cursor.query(cursor, limit), User.class);
+    }
+
+    @Override
+    public Mono<Long> patch(String id, Map<String, Object> fields) {
+        Update update = new Update();
+        fields.forEach(update::set);
+        return mongoOperations.updateFirst(query(where("id").is(id)), update, User.class)
+                .map(UpdateResult::getMatchedCount);
+    }
+
+    @Override
+    public Flux<User> findMembersAfter(String clubId, Cursor cursor, int limit) {
+        Query query = Cursor.query(cursor, limit)
+                .addCriteria(where("clubId").is(clubId));
+        query.fields().include("name").include("age").include("createDate");
+        return mongoOperations.find(query, User.class);
+    }
+
+    @Override
+    public Mono<Boolean> joinClub(String userId, String clubId, int minAgeForJoin) {
+        Query query = query(where("id").is(userId)
+                .and("clubId").in(null, "")
+                .and("age").gte(minAgeForJoin));
+        return mongoOperations.updateFirst(query, Update.update("clubId", clubId), User.class)
+                .map(x -> x.getModifiedCount() == 1);
+    }
+
+    @Override
+    public Mono<User> saveDetails(User user) {
+        if (user.getId() == null) {
+            user.setClubId(null);
+            return mongoOperations.insert(user);
+        }
+        Update update = new Update()
+                .set("name", user.getName())
+                .set("age", user.getAge())
+                .set("createDate", user.getCreateDate());
+        return mongoOperations.findAndModify(query(where("id").is(user.getId())), update,
+                options().returnNew(true).upsert(true), User.class);
+    }
+
+    @Override
+    public Mono<Map<Integer, Throwable>> bulkSaveDetails(List<User> users) {
+        List<WriteModel<Document>> writes = users.stream()
+                .map(x -> {
+                    if (x.getId() == null) {
+                        x.setId(BulkWrites.newId());
+                        x.setClubId(null);
+                        return new InsertOneModel<>(BulkWrites.toDocument(mongoOperations, x));
+                    }
+                    Document details = new Document("name", x.getName())
+                            .append("age", x.getAge())
+                            .append("createDate", x.getCreateDate());
+                    return new UpdateOneModel<Document>(new Document("_id", MongoIds.toObjectId(x.getId())),
+                            new Document("$set", details), new UpdateOptions().upsert(true));
+                })
+                .collect(toList());
+        return BulkWrites.execute(mongoOperations, User.class, writes);
+    }
+
+    @Override
+    public Mono<Long> joinClubs(Map<Club, ? extends Collection<String>> userIdsByClub) {
+        List<WriteModel<Document>> writes = userIdsByClub.entrySet().stream()
+                .map(x -> new UpdateManyModel<Document>(
+                        idIn(x.getValue())
+                                .append("clubId", new Document("$in", Arrays.asList(null, "")))
+                                .append("age", new Document("$gte", x.getKey().getMinAgeForJoin())),
+                        new Document("$set", new Document("clubId", x.getKey().getId()))))
+                .collect(toList());
+        return bulkWrite(writes);
+    }
+
+    @Override
+    public Mono<Long> leaveClubs(Map<String, ? extends Collection<String>> userIdsByClub) {
+        List<WriteModel<Document>> writes = userIdsByClub.entrySet().stream()
+                .map(x -> new UpdateManyModel<Document>(
+                        idIn(x.getValue()).append("clubId", x.getKey()),
+                        new Document("$unset", new Document("clubId", ""))))
+                .collect(toList());
+        return bulkWrite(writes);
+    }
+
+    private Document idIn(Collection<String> ids) {
+        return new Document("_id", new Document("$in", ids.stream().map(MongoIds::toObjectId).collect(toList())));
+    }
+
+    private Mono<Long> bulkWrite(List<WriteModel<Document>> writes) {
+        if (writes.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return mongoOperations.execute(User.class, x -> x.bulkWrite(writes, new BulkWriteOptions().ordered(false)))
+                .next()
+                .map(x -> (long) x.getModifiedCount());
+    }
+
+    @Override
+    public Flux<User> findMembershipsByIds(Collection<String> userIds) {
+        Query query = query(where("id").in(userIds));
+        query.fields().include("clubId").include("age");
+        return mongoOperations.find(query, User.class);
+    }
+
+    @Override
+    public Mono<User> leaveClub(String userId) {
+        Query query = query(where("id").is(userId));
+        query.fields().include("clubId");
+        return mongoOperations.findAndModify(query, new Update().unset("clubId"), User.class);
+    }
+
+    @Override
+    public Mono<User> findAndRemove(String userId) {
+        Query query = query(where("id").is(userId));
+        query.fields().include("clubId");
+        return mongoOperations.findAndRemove(query, User.class);
+    }
+
+    @Override
+    public Mono<Map<String, Long>> countMembersByClub() {
+        Aggregation aggregation = newAggregation(
+                match(where("clubId").exists(true)),
+                group("clubId").count().as("count"));
+        return mongoOperations.aggregate(aggregation, User.class, Document.class)
+                .filter(x -> StringUtils.hasLength(x.getString("_id")))
+                .collectMap(x -> x.getString("_id"), x -> x.get("count", Number.class).longValue());
+    }
+
+    @Override
+    public Mono<String> findClubIdById(String userId) {
+        Query query = query(where("id").is(userId));
+        query.fields().include("clubId");
+        return mongoOperations.findOne(query, User.class)
+                .flatMap(x -> Mono.justOrEmpty(x.getClubId()))
+                .filter(StringUtils::hasLength);
+    }
+}
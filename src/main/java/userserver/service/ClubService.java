@@ -1,87 +1,375 @@
 package userserver.service;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.function.Tuple2;
+import userserver.cache.ClubCache;
 import userserver.domain.Club;
 import userserver.domain.User;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 import userserver.enums.JoinResult;
+import userserver.exception.BadRequestException;
+import userserver.handler.model.ClubUserId;
+import userserver.handler.model.ClubUserResult;
 import userserver.repository.ClubRepository;
+import userserver.repository.Cursor;
 import userserver.repository.UserRepository;
 
+import java.util.*;
 import java.util.function.Function;
 
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
 @Service
 public class ClubService {
     private ClubRepository clubRepository;
     private UserRepository userRepository;
-    private final Sort SORT = Sort.by(Sort.Order.asc("createDate"));
+    private ClubCache clubCache;
+    private final Function<Club, Mono<Club>> saver;
+    private final Sort SORT = Cursor.SORT;
+    private static final int BATCH_SIZE = 1000;
+    private static final int RELEASE_RETRIES = 2;
+    private static final int RESERVE_ATTEMPTS = 5;
     private final int pageSize;
 
-    public ClubService(ClubRepository clubRepository, UserRepository userRepository, @Value("${clubservice.paging-size}") int pageSize) {
+    public ClubService(ClubRepository clubRepository, UserRepository userRepository, ClubCache clubCache, WriteCoalescing writeCoalescing, @Value("${clubservice.paging-size}") int pageSize) {
         this.clubRepository = clubRepository;
         this.userRepository = userRepository;
+        this.clubCache = clubCache;
+        this.saver = writeCoalescing.wrap("clubs", clubRepository::saveDetails, clubRepository::bulkSaveDetails);
         this.pageSize = pageSize;
     }
 
     public Mono<Club> save(Club club) {
-        return clubRepository.save(club);
+        return saver.apply(club)
+                .flatMap(x -> clubCache.evict(x.getId()).thenReturn(x));
+    }
+
+    /**
+     * 값이 있는 필드만 $set 하고 cache에서 뺀다.
+     * @return 찾은 club 수
+     */
+    public Mono<Long> patch(String id, Club changes) {
+        Map<String, Object> fields = changes.toPatch();
+        if (fields.isEmpty()) {
+            return Mono.error(new BadRequestException("nothing to patch"));
+        }
+        return clubRepository.patch(id, fields)
+                .flatMap(x -> clubCache.evict(id).thenReturn(x));
+    }
+
+    /**
+     * getList(page)에 줄 수 있는 가장 큰 page. 넘으면 page * pageSize(skip)가 int를 넘는다.
+     */
+    public int getMaxPage() {
+        return Integer.MAX_VALUE / pageSize;
     }
 
     public Flux<Club> getList(int page) {
-        return clubRepository
-                .findAll(SORT)
-                .skip(page * pageSize)
-                .limitRequest(pageSize);
+        return clubRepository.findAllBy(PageRequest.of(page, pageSize, SORT));
+    }
+
+    public Flux<Club> getList(Cursor cursor) {
+        return clubRepository.findAllAfter(cursor, pageSize);
+    }
+
+    /**
+     * cursor 다음부터 끝까지. 구독자가 요청하는 만큼만 mongo에서 읽는다.
+     */
+    public Flux<Club> getAll(Cursor cursor) {
+        return clubRepository.findAllAfter(cursor, 0);
+    }
+
+    public Flux<User> getMembers(String clubId, Cursor cursor) {
+        return userRepository.findMembersAfter(clubId, cursor, pageSize);
+    }
+
+    public Flux<User> getAllMembers(String clubId, Cursor cursor) {
+        return userRepository.findMembersAfter(clubId, cursor, 0);
     }
 
     public Mono<Club> get(String id) {
-        return clubRepository.findById(id);
+        return clubCache.get(id);
+    }
+
+    /**
+     * 요청한 id 순서대로. 없는 id는 빠진다.
+     */
+    public Flux<Club> getByIds(List<String> ids) {
+        return clubCache.getAll(ids);
     }
 
-    public Mono<Void> delete(String id) {
-        return clubRepository.findById(id).flatMap(x -> clubRepository.delete(x).then());
+    public Mono<Long> delete(String id) {
+        return clubRepository.removeById(id)
+                .flatMap(x -> clubCache.evict(id).thenReturn(x));
     }
 
+    /**
+     * user의 clubId/age를 projection으로 먼저 확인해서, 가입할 수 없는 user는 자리를 잡지 않고 바로 실패시킨다.
+     * 그 다음 club의 자리를 잡고(memberCount $inc) user를 가입시킨다. user 가입이 실패하면 잡은 자리를 돌려준다.
+     * 자리 잡기는 cache에 있는 maxMembers를 조건으로 쓰기 때문에, 실패하면 mongo에서 club을 다시 읽어서
+     * maxMembers가 바뀐 경우에만 한 번 더 시도한다.
+     */
     public Mono<JoinResult> join(String clubId, String userId) {
-        return join(clubId, userId, this::checkJoinRule)
+        return clubCache.get(clubId)
+                .flatMap(club -> userRepository.findMembershipsByIds(Collections.singletonList(userId))
+                        .next()
+                        .flatMap(user -> {
+                            JoinResult failure = checkEligible(club, user);
+                            return failure != null ? Mono.just(failure) : reserveSeatAndJoin(club, userId)
+                                    .switchIfEmpty(Mono.defer(() -> retryIfMaxMembersChanged(club, userId)));
+                        }))
                 .defaultIfEmpty(JoinResult.NOT_FOUND);
     }
 
-    public <T> Mono<T> join(String clubId, String userId, Function<Tuple2<Club, User>, Mono<T>> f) {
-        Mono<Club> clubM = clubRepository.findById(clubId);
-        Mono<User> userM = userRepository.findById(userId);
-        return Mono.zip(clubM, userM)
-                .flatMap(x -> f.apply(x));
+    /**
+     * @return 가입할 수 있으면 null
+     */
+    private static JoinResult checkEligible(Club club, User user) {
+        if (StringUtils.hasLength(user.getClubId())) {
+            return JoinResult.FAIL_CLUB_IS_JOINED;
+        } else if (club.getMinAgeForJoin() > user.getAge()) {
+            return JoinResult.FAIL_NOT_ALLOW_AGE;
+        }
+        return null;
     }
 
-    private Mono<JoinResult> checkJoinRule(Tuple2<Club, User> tuple) {
-        Club club = tuple.getT1();
-        User user = tuple.getT2();
-        if(club == null || user == null) {
-            return Mono.just(JoinResult.NOT_FOUND);
-        }
-        if(StringUtils.isEmpty(user.getClubId()) == false) {
-            return Mono.just(JoinResult.FAIL_CLUB_IS_JOINED);
-        }
-        if(club.getMinAgeForJoin() > user.getAge()) {
-            return Mono.just(JoinResult.FAIL_NOT_ALLOW_AGE );
-        }
-        user.setClubId(club.getId());
-        return userRepository.save(user)
-                .then(clubRepository.save(club))
-                .then(Mono.just(JoinResult.SUCCESS));
+    private Mono<JoinResult> retryIfMaxMembersChanged(Club cached, String userId) {
+        return clubRepository.findById(cached.getId())
+                .doOnNext(clubCache::put)
+                .flatMap(reloaded -> Objects.equals(reloaded.getMaxMembers(), cached.getMaxMembers())
+                        ? Mono.just(JoinResult.FAIL_CLUB_IS_FULL)
+                        : reserveSeatAndJoin(reloaded, userId).defaultIfEmpty(JoinResult.FAIL_CLUB_IS_FULL));
     }
 
-     public Mono<User> leave(String userId) {
+    /**
+     * @return 자리를 못 잡았으면 empty
+     */
+    private Mono<JoinResult> reserveSeatAndJoin(Club club, String userId) {
+        return clubRepository.reserveSeats(club.getId(), club.getMaxMembers(), 1)
+                .doOnNext(clubCache::put)
+                .flatMap(reserved -> userRepository.joinClub(userId, reserved.getId(), reserved.getMinAgeForJoin())
+                        .flatMap(joined -> joined
+                                ? Mono.just(JoinResult.SUCCESS)
+                                : releaseSeat(reserved.getId()).then(findJoinFailure(reserved, userId))));
+    }
+
+    /**
+     * 잡은 자리를 돌려준다. 끝내 실패하면 reconciler가 고칠 때까지 자리가 하나 비어 있게 되므로 몇 번 더 시도한다.
+     */
+    private Mono<Club> releaseSeat(String clubId) {
+        return addMemberCount(clubId, -1)
+                .retry(RELEASE_RETRIES);
+    }
+
+    /**
+     * conditional update가 실패한 이유를 찾는다. 실패한 경우에만 user를 다시 읽는다.
+     */
+    private Mono<JoinResult> findJoinFailure(Club club, String userId) {
         return userRepository.findById(userId)
-                .flatMap(x -> {
-                    x.setClubId(null);
-                    return userRepository.save(x);
+                .map(user -> {
+                    if(StringUtils.isEmpty(user.getClubId()) && club.getMinAgeForJoin() > user.getAge()) {
+                        return JoinResult.FAIL_NOT_ALLOW_AGE;
+                    }
+                    // 동시에 다른 가입 요청이 먼저 반영된 경우도 여기에 해당한다.
+                    return JoinResult.FAIL_CLUB_IS_JOINED;
+                })
+                .defaultIfEmpty(JoinResult.NOT_FOUND);
+    }
+
+    public Mono<Long> leave(String userId) {
+        return userRepository.leaveClub(userId)
+                .flatMap(x -> StringUtils.isEmpty(x.getClubId())
+                        ? Mono.just(1L)
+                        : addMemberCount(x.getClubId(), -1).thenReturn(1L))
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * pair를 BATCH_SIZE씩 나눠서 가입시킨다. 나눈 묶음마다 user를 한 번 읽고, club별로 자리를 한 번에 잡고,
+     * 하나의 unordered bulkWrite로 반영한다. 결과는 요청 순서대로 나온다.
+     */
+    public Flux<ClubUserResult> joinAll(Flux<ClubUserId> pairs) {
+        return pairs.buffer(BATCH_SIZE).concatMap(this::joinBatch);
+    }
+
+    private Flux<ClubUserResult> joinBatch(List<ClubUserId> pairs) {
+        Mono<Map<String, Club>> clubs = Flux.fromIterable(distinct(pairs, ClubUserId::getClubId))
+                .flatMap(clubCache::get)
+                .collectMap(Club::getId);
+        return Mono.zip(clubs, findMemberships(pairs))
+                .flatMapMany(x -> {
+                    JoinResult[] results = new JoinResult[pairs.size()];
+                    Map<Club, List<Integer>> candidates = new LinkedHashMap<>();
+                    Set<String> claimed = new HashSet<>();
+                    for (int i = 0; i < pairs.size(); i++) {
+                        Club club = x.getT1().get(pairs.get(i).getClubId());
+                        User user = x.getT2().get(pairs.get(i).getUserId());
+                        if (club == null || user == null) {
+                            results[i] = JoinResult.NOT_FOUND;
+                        } else if (StringUtils.hasLength(user.getClubId())) {
+                            results[i] = JoinResult.FAIL_CLUB_IS_JOINED;
+                        } else if (club.getMinAgeForJoin() > user.getAge()) {
+                            results[i] = JoinResult.FAIL_NOT_ALLOW_AGE;
+                        } else if (!claimed.add(user.getId())) {
+                            // 같은 묶음에서 먼저 나온 pair로 가입할 user
+                            results[i] = JoinResult.FAIL_CLUB_IS_JOINED;
+                        } else {
+                            candidates.computeIfAbsent(club, k -> new ArrayList<>()).add(i);
+                        }
+                    }
+                    return Flux.fromIterable(candidates.entrySet())
+                            .flatMap(c -> reserveSeats(c.getKey(), c.getValue().size())
+                                    .map(reserved -> Tuples.of(reserved.getT1(), c.getValue().subList(0, reserved.getT2())))
+                                    .doOnNext(reserved -> c.getValue().subList(reserved.getT2().size(), c.getValue().size())
+                                            .forEach(i -> results[i] = JoinResult.FAIL_CLUB_IS_FULL))
+                                    .switchIfEmpty(Mono.fromRunnable(() -> c.getValue().forEach(i -> results[i] = JoinResult.NOT_FOUND)))
+                                    .filter(reserved -> !reserved.getT2().isEmpty()))
+                            .collectMap(Tuple2::getT1, Tuple2::getT2)
+                            .flatMap(granted -> applyJoins(pairs, granted, results))
+                            .thenMany(toResults(pairs, results));
                 });
     }
+
+    /**
+     * seats 만큼 자리를 잡는다. 모자라면 mongo에서 club을 다시 읽어서 남은 자리만큼 다시 시도한다.
+     * @return 자리를 잡은 club과 잡은 자리 수. club이 없으면 empty
+     */
+    private Mono<Tuple2<Club, Integer>> reserveSeats(Club club, int seats) {
+        return clubRepository.reserveSeats(club.getId(), club.getMaxMembers(), seats)
+                .map(x -> Tuples.of(x, seats))
+                .switchIfEmpty(Mono.defer(() -> reserveAvailableSeats(club.getId(), seats, RESERVE_ATTEMPTS)))
+                .doOnNext(x -> clubCache.put(x.getT1()));
+    }
+
+    /**
+     * 읽은 뒤에 다른 요청이 먼저 자리를 잡으면 조건부 update가 실패한다. 자리가 남아 있을 수 있으므로 attempts번까지 다시 읽는다.
+     */
+    private Mono<Tuple2<Club, Integer>> reserveAvailableSeats(String clubId, int seats, int attempts) {
+        return clubRepository.findById(clubId)
+                .doOnNext(clubCache::put)
+                .flatMap(reloaded -> {
+                    int available = reloaded.getMaxMembers() == null ? seats
+                            : (int) Math.min(seats, Math.max(0, reloaded.getMaxMembers() - reloaded.getMemberCount()));
+                    if (available == 0) {
+                        return Mono.just(Tuples.of(reloaded, 0));
+                    }
+                    return clubRepository.reserveSeats(reloaded.getId(), reloaded.getMaxMembers(), available)
+                            .map(x -> Tuples.of(x, available))
+                            .switchIfEmpty(Mono.defer(() -> attempts > 1
+                                    ? reserveAvailableSeats(clubId, seats, attempts - 1)
+                                    : Mono.just(Tuples.of(reloaded, 0))));
+                });
+    }
+
+    /**
+     * 자리를 잡은 pair를 bulkWrite로 가입시키고, 가입되지 않은 만큼 자리를 돌려준다.
+     * 전부 가입된 경우가 아니면 user를 다시 읽어서 pair마다 결과를 정한다.
+     */
+    private Mono<Void> applyJoins(List<ClubUserId> pairs, Map<Club, List<Integer>> granted, JoinResult[] results) {
+        Map<Club, List<String>> userIds = new LinkedHashMap<>();
+        granted.forEach((club, indexes) -> userIds.put(club, indexes.stream().map(i -> pairs.get(i).getUserId()).collect(toList())));
+        long total = granted.values().stream().mapToLong(List::size).sum();
+        return userRepository.joinClubs(userIds)
+                .flatMap(modified -> reloadUnlessAllModified(pairs, modified == total))
+                .flatMapMany(users -> Flux.fromIterable(granted.entrySet())
+                        .flatMap(g -> {
+                            Club club = g.getKey();
+                            int joined = 0;
+                            for (Integer i : g.getValue()) {
+                                results[i] = users.map(x -> joinResultOf(club, x.get(pairs.get(i).getUserId()))).orElse(JoinResult.SUCCESS);
+                                joined += results[i] == JoinResult.SUCCESS ? 1 : 0;
+                            }
+                            int unused = g.getValue().size() - joined;
+                            return unused == 0 ? Mono.empty() : addMemberCount(club.getId(), -unused);
+                        }))
+                .then();
+    }
+
+    private JoinResult joinResultOf(Club club, User user) {
+        if (user == null) {
+            return JoinResult.NOT_FOUND;
+        } else if (club.getId().equals(user.getClubId())) {
+            return JoinResult.SUCCESS;
+        } else if (StringUtils.isEmpty(user.getClubId()) && club.getMinAgeForJoin() > user.getAge()) {
+            return JoinResult.FAIL_NOT_ALLOW_AGE;
+        }
+        return JoinResult.FAIL_CLUB_IS_JOINED;
+    }
+
+    /**
+     * pair의 club에 가입되어 있는 user만 탈퇴시킨다. joinAll과 같이 묶음마다 bulkWrite 한 번. 결과는 SUCCESS 또는 NOT_FOUND.
+     */
+    public Flux<ClubUserResult> leaveAll(Flux<ClubUserId> pairs) {
+        return pairs.buffer(BATCH_SIZE).concatMap(this::leaveBatch);
+    }
+
+    private Flux<ClubUserResult> leaveBatch(List<ClubUserId> pairs) {
+        return findMemberships(pairs)
+                .flatMapMany(users -> {
+                    JoinResult[] results = new JoinResult[pairs.size()];
+                    Map<String, List<Integer>> candidates = new LinkedHashMap<>();
+                    Set<String> claimed = new HashSet<>();
+                    for (int i = 0; i < pairs.size(); i++) {
+                        ClubUserId pair = pairs.get(i);
+                        User user = users.get(pair.getUserId());
+                        if (user == null || pair.getClubId() == null || !pair.getClubId().equals(user.getClubId()) || !claimed.add(user.getId())) {
+                            results[i] = JoinResult.NOT_FOUND;
+                        } else {
+                            candidates.computeIfAbsent(pair.getClubId(), k -> new ArrayList<>()).add(i);
+                        }
+                    }
+                    Map<String, List<String>> userIds = new LinkedHashMap<>();
+                    candidates.forEach((clubId, indexes) -> userIds.put(clubId, indexes.stream().map(i -> pairs.get(i).getUserId()).collect(toList())));
+                    long total = candidates.values().stream().mapToLong(List::size).sum();
+                    return userRepository.leaveClubs(userIds)
+                            .flatMap(modified -> reloadUnlessAllModified(pairs, modified == total))
+                            .flatMapMany(after -> Flux.fromIterable(candidates.entrySet())
+                                    .flatMap(c -> {
+                                        int left = 0;
+                                        for (Integer i : c.getValue()) {
+                                            boolean success = after
+                                                    .map(x -> x.get(pairs.get(i).getUserId()))
+                                                    .map(user -> !c.getKey().equals(user.getClubId()))
+                                                    .orElse(!after.isPresent());
+                                            results[i] = success ? JoinResult.SUCCESS : JoinResult.NOT_FOUND;
+                                            left += success ? 1 : 0;
+                                        }
+                                        return left == 0 ? Mono.empty() : addMemberCount(c.getKey(), -left);
+                                    }))
+                            .thenMany(toResults(pairs, results));
+                });
+    }
+
+    /**
+     * 전부 반영됐으면 다시 읽지 않는다. (empty) 아니면 pair마다 결과를 정하려고 user를 다시 읽는다.
+     */
+    private Mono<Optional<Map<String, User>>> reloadUnlessAllModified(List<ClubUserId> pairs, boolean allModified) {
+        return allModified ? Mono.just(Optional.empty()) : findMemberships(pairs).map(Optional::of);
+    }
+
+    private Mono<Map<String, User>> findMemberships(List<ClubUserId> pairs) {
+        return userRepository.findMembershipsByIds(distinct(pairs, ClubUserId::getUserId))
+                .collectMap(User::getId);
+    }
+
+    private static Set<String> distinct(List<ClubUserId> pairs, Function<ClubUserId, String> id) {
+        return pairs.stream().map(id).filter(StringUtils::hasLength).collect(toSet());
+    }
+
+    private static Flux<ClubUserResult> toResults(List<ClubUserId> pairs, JoinResult[] results) {
+        return Flux.range(0, pairs.size())
+                .map(i -> new ClubUserResult(pairs.get(i).getClubId(), pairs.get(i).getUserId(), results[i]));
+    }
+
+    private Mono<Club> addMemberCount(String clubId, long delta) {
+        return clubRepository.incrementMemberCount(clubId, delta)
+                .doOnNext(clubCache::put);
+    }
 }
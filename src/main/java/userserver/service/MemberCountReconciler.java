@@ -0,0 +1,84 @@
+package userserver.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import userserver.domain.Club;
+import userserver.repository.ClubRepository;
+import userserver.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Club.memberCount는 join/leave/user 삭제 때 $inc로 관리되지만, 중간에 실패하면 실제 member 수와 어긋날 수 있다.
+ * 주기적으로 users를 clubId별로 세서 어긋난 club만 고친다.
+ */
+@Slf4j
+@Component
+public class MemberCountReconciler {
+    private final ClubRepository clubRepository;
+    private final UserRepository userRepository;
+    private final Duration quietInterval;
+
+    public MemberCountReconciler(ClubRepository clubRepository,
+                                 UserRepository userRepository,
+                                 @Value("${clubservice.member-count.reconcile-quiet-millis}") long quietMillis) {
+        this.clubRepository = clubRepository;
+        this.userRepository = userRepository;
+        this.quietInterval = Duration.ofMillis(quietMillis);
+    }
+
+    @Scheduled(initialDelayString = "${clubservice.member-count.reconcile-interval-millis}",
+            fixedDelayString = "${clubservice.member-count.reconcile-interval-millis}")
+    public void run() {
+        Long repaired = reconcile().block();
+        if (repaired != null && repaired > 0) {
+            log.info("repaired member count of {} clubs", repaired);
+        }
+    }
+
+    /**
+     * join/leave는 memberCount와 user.clubId를 따로 바꾸기 때문에, 진행중인 join/leave가 있으면 한 번 센 값은 어긋나 보인다.
+     * 그래서 quietInterval을 두고 두 번 세서, 두 번 다 같은 값으로 어긋난 club만 고친다.
+     * 고칠 때도 memberCount가 그대로일 때만 바꾸므로 그 사이 $inc 된 club은 건드리지 않는다.
+     * @return 고친 club 수
+     */
+    public Mono<Long> reconcile() {
+        return mismatches()
+                .flatMap(first -> mismatches()
+                        .delaySubscription(quietInterval)
+                        .flatMap(second -> reset(stillMismatched(first, second))));
+    }
+
+    /**
+     * clubId -> [memberCount, 실제 member 수]
+     */
+    private Mono<Map<String, long[]>> mismatches() {
+        return clubRepository.findAllMemberCounts()
+                .collectMap(Club::getId, Club::getMemberCount)
+                .flatMap(expected -> userRepository.countMembersByClub()
+                        .map(actual -> expected.entrySet().stream()
+                                .filter(x -> !x.getValue().equals(actual.getOrDefault(x.getKey(), 0L)))
+                                .collect(Collectors.toMap(Map.Entry::getKey,
+                                        x -> new long[]{x.getValue(), actual.getOrDefault(x.getKey(), 0L)}))));
+    }
+
+    private static Map<String, long[]> stillMismatched(Map<String, long[]> first, Map<String, long[]> second) {
+        return second.entrySet().stream()
+                .filter(x -> first.containsKey(x.getKey()))
+                .filter(x -> first.get(x.getKey())[0] == x.getValue()[0] && first.get(x.getKey())[1] == x.getValue()[1])
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    private Mono<Long> reset(Map<String, long[]> mismatches) {
+        return Flux.fromIterable(mismatches.entrySet())
+                .flatMap(x -> clubRepository.resetMemberCount(x.getKey(), x.getValue()[0], x.getValue()[1]))
+                .filter(x -> x)
+                .count();
+    }
+}
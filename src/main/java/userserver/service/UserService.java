@@ -1,54 +1,108 @@
 package userserver.service;
 
-import lombok.NonNull;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import userserver.cache.ClubCache;
 import userserver.domain.Club;
 import userserver.domain.User;
+import userserver.exception.BadRequestException;
 import userserver.repository.ClubRepository;
+import userserver.repository.Cursor;
 import userserver.repository.UserRepository;
-import org.springframework.stereotype.Service;
-import reactor.core.publisher.Mono;
+import userserver.util.MultiGet;
+import userserver.util.SingleFlight;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
     private final ClubRepository clubRepository;
+    private final ClubCache clubCache;
+    private final SingleFlight<String, User> lookups;
+    private final Function<User, Mono<User>> saver;
     private final int pageSize;
-    private final Sort SORT = Sort.by(Sort.Order.asc("createDate"));
+    private final Sort SORT = Cursor.SORT;
 
-    public UserService(UserRepository userRepository, ClubRepository clubRepository, @Value("${clubservice.paging-size}") int pageSize) {
+    public UserService(UserRepository userRepository, ClubRepository clubRepository, ClubCache clubCache, MeterRegistry meterRegistry, WriteCoalescing writeCoalescing, @Value("${clubservice.paging-size}") int pageSize) {
         this.userRepository = userRepository;
         this.clubRepository = clubRepository;
+        this.clubCache = clubCache;
+        this.lookups = new SingleFlight<>("users", meterRegistry);
+        this.saver = writeCoalescing.wrap("users", userRepository::saveDetails, userRepository::bulkSaveDetails);
         this.pageSize = pageSize;
     }
 
-
-
     public Mono<User> get(String userId) {
-        return userRepository.findById(userId);
+        return lookups.execute(userId, userRepository::findById);
+    }
+
+    /**
+     * 요청한 id 순서대로. 없는 id는 빠진다.
+     */
+    public Flux<User> getByIds(List<String> ids) {
+        return MultiGet.findAll(ids, userRepository::findAllById, User::getId)
+                .flatMapIterable(x -> MultiGet.inOrder(ids, x));
     }
 
     public Mono<User> save(User user) {
-        return userRepository.save(user);
+        return saver.apply(user);
+    }
+
+    /**
+     * 값이 있는 필드만 $set 한다.
+     * @return 찾은 user 수
+     */
+    public Mono<Long> patch(String userId, User changes) {
+        Map<String, Object> fields = changes.toPatch();
+        if (fields.isEmpty()) {
+            return Mono.error(new BadRequestException("nothing to patch"));
+        }
+        return userRepository.patch(userId, fields);
+    }
+
+    /**
+     * getList(page)에 줄 수 있는 가장 큰 page. 넘으면 page * pageSize(skip)가 int를 넘는다.
+     */
+    public int getMaxPage() {
+        return Integer.MAX_VALUE / pageSize;
     }
 
     public Flux<User> getList(int page) {
-        return userRepository
-                .findAll(SORT)
-                .skip(page * pageSize)
-                .limitRequest(pageSize);
+        return userRepository.findAllBy(PageRequest.of(page, pageSize, SORT));
+    }
+
+    public Flux<User> getList(Cursor cursor) {
+        return userRepository.findAllAfter(cursor, pageSize);
+    }
+
+    /**
+     * cursor 다음부터 끝까지. 구독자가 요청하는 만큼만 mongo에서 읽는다.
+     */
+    public Flux<User> getAll(Cursor cursor) {
+        return userRepository.findAllAfter(cursor, 0);
     }
 
-    public Mono<Void> delete(String userId) {
-        return userRepository.findById(userId)
-                .flatMap(x -> userRepository.delete(x).then());
+    public Mono<Long> delete(String userId) {
+        return userRepository.findAndRemove(userId)
+                .flatMap(x -> StringUtils.isEmpty(x.getClubId())
+                        ? Mono.just(1L)
+                        : clubRepository.incrementMemberCount(x.getClubId(), -1)
+                            .doOnNext(clubCache::put)
+                            .thenReturn(1L))
+                .defaultIfEmpty(0L);
     }
 
     public Mono<Club> getClub(String userId) {
-        return userRepository.findById(userId)
-                .map(User::getClubId)
-                .flatMap(clubRepository::findById);
+        return userRepository.findClubIdById(userId)
+                .flatMap(clubCache::get);
     }
 }
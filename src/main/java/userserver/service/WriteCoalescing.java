@@ -0,0 +1,51 @@
+package userserver.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import userserver.util.WriteCoalescer;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * save를 WriteCoalescer로 모아서 bulkWrite 할지 정한다. 꺼져 있으면 요청마다 바로 저장한다.
+ */
+@Component
+public class WriteCoalescing {
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final List<WriteCoalescer<?>> coalescers = new CopyOnWriteArrayList<>();
+
+    public WriteCoalescing(MeterRegistry meterRegistry,
+                           @Value("${clubservice.write-coalescing.enabled}") boolean enabled,
+                           @Value("${clubservice.write-coalescing.window-millis}") long windowMillis,
+                           @Value("${clubservice.write-coalescing.max-batch-size}") int maxBatchSize) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.window = Duration.ofMillis(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public <T> Function<T, Mono<T>> wrap(String name, Function<T, Mono<T>> single,
+                                         Function<List<T>, Mono<Map<Integer, Throwable>>> bulk) {
+        if (!enabled) {
+            return single;
+        }
+        WriteCoalescer<T> coalescer = new WriteCoalescer<>(name, meterRegistry, window, maxBatchSize, bulk);
+        coalescers.add(coalescer);
+        return coalescer::execute;
+    }
+
+    @PreDestroy
+    public void stop() {
+        coalescers.forEach(WriteCoalescer::dispose);
+    }
+}
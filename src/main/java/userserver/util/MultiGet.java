@@ -0,0 +1,35 @@
+package userserver.util;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+
+public class MultiGet {
+    /** $in 하나에 넣는 id 수 */
+    public static final int CHUNK_SIZE = 500;
+
+    /**
+     * 중복을 뺀 id를 CHUNK_SIZE씩 나눠서 finder($in 조회)로 읽는다.
+     * @return id -> document. 없는 id는 빠진다.
+     */
+    public static <T> Mono<Map<String, T>> findAll(Collection<String> ids,
+                                                   Function<Collection<String>, Flux<T>> finder,
+                                                   Function<T, String> idOf) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        return Flux.range(0, (distinct.size() + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                .map(i -> distinct.subList(i * CHUNK_SIZE, Math.min(distinct.size(), (i + 1) * CHUNK_SIZE)))
+                .flatMap(finder)
+                .collectMap(idOf);
+    }
+
+    /**
+     * 요청한 id 순서대로. 없는 id는 빠지고 중복된 id는 중복해서 나온다.
+     */
+    public static <T> List<T> inOrder(List<String> ids, Map<String, T> found) {
+        return ids.stream().map(found::get).filter(Objects::nonNull).collect(toList());
+    }
+}
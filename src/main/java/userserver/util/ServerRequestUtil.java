@@ -1,17 +1,140 @@
 package userserver.util;
 
-import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.codec.CodecException;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.server.ServerRequest;
+import reactor.core.publisher.Mono;
+import userserver.configuration.CodecConfiguration;
+import userserver.exception.BadRequestException;
+import userserver.repository.Cursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static java.util.stream.Collectors.toList;
 
-@Slf4j
 public class ServerRequestUtil {
+    private static final List<MediaType> STREAMING_MEDIA_TYPES = Arrays.asList(
+            CodecConfiguration.APPLICATION_NDJSON, MediaType.APPLICATION_STREAM_JSON, MediaType.TEXT_EVENT_STREAM);
+    private static final ParameterizedTypeReference<List<String>> IDS = new ParameterizedTypeReference<List<String>>() {};
+
+    /**
+     * 없으면 "". pathVariable()은 없을 때 IllegalArgumentException을 던지므로 map에서 바로 꺼낸다.
+     */
     public static String getPathVariable(ServerRequest serverRequest, String path) {
-        String value = "";
+        return serverRequest.pathVariables().getOrDefault(path, "");
+    }
+
+    /**
+     * 0 이상의 int path variable. 없으면 empty, 숫자가 아니거나 int 범위를 넘으면 400.
+     */
+    public static OptionalInt getIntPathVariable(ServerRequest serverRequest, String path) {
+        String value = getPathVariable(serverRequest, path);
+        if (value.isEmpty()) {
+            return OptionalInt.empty();
+        }
+        long number = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9' || (number = number * 10 + (c - '0')) > Integer.MAX_VALUE) {
+                throw new BadRequestException("invalid " + path);
+            }
+        }
+        return OptionalInt.of((int) number);
+    }
+
+    /**
+     * 0 이상 max 이하의 int path variable. 없으면 empty, 아니면 400.
+     */
+    public static OptionalInt getIntPathVariable(ServerRequest serverRequest, String path, int max) {
+        OptionalInt value = getIntPathVariable(serverRequest, path);
+        if (value.isPresent() && value.getAsInt() > max) {
+            throw new BadRequestException("invalid " + path);
+        }
+        return value;
+    }
+
+    /**
+     * body를 type으로 decode 한다. body가 없거나 JSON이 잘못됐으면 400.
+     */
+    public static <T> Mono<T> getBody(ServerRequest serverRequest, Class<T> type) {
+        return serverRequest.bodyToMono(type)
+                .onErrorMap(ServerRequestUtil::isMalformed, e -> new BadRequestException("malformed body", e))
+                .switchIfEmpty(Mono.error(new BadRequestException("empty body")));
+    }
+
+    /**
+     * body의 JSON array(또는 stream)를 끝까지 decode 한다. response를 쓰기 시작하기 전에 다 읽어야 잘못된 body를 400으로 줄 수 있다.
+     * body가 없으면 빈 list.
+     */
+    public static <T> Mono<List<T>> getBodies(ServerRequest serverRequest, Class<T> type) {
+        return serverRequest.bodyToFlux(type)
+                .onErrorMap(ServerRequestUtil::isMalformed, e -> new BadRequestException("malformed body", e))
+                // array 안의 null은 decoder가 null로 map 해서 NullPointerException이 된다.
+                .onErrorMap(NullPointerException.class, e -> new BadRequestException("null element in body", e))
+                .collectList();
+    }
+
+    private static boolean isMalformed(Throwable e) {
+        return e instanceof CodecException || e instanceof JsonProcessingException;
+    }
+
+    /**
+     * ?cursor= 값을 Cursor로 바꾼다. 없으면 null(첫 페이지), 형식이 잘못되면 400.
+     */
+    public static Cursor getCursor(ServerRequest serverRequest) {
+        String token = serverRequest.queryParam("cursor").orElse("");
+        if (StringUtils.isEmpty(token)) {
+            return null;
+        }
         try {
-            value = serverRequest.pathVariable(path);
+            return Cursor.decode(token);
         } catch (IllegalArgumentException e) {
-            log.debug("path variable is null");
+            throw new BadRequestException("invalid cursor", e);
         }
-        return value;
+    }
+
+    /**
+     * ?ids=a,b&ids=c 를 [a, b, c]로 바꾼다. 빈 값은 뺀다.
+     */
+    public static List<String> getIds(ServerRequest serverRequest) {
+        return serverRequest.queryParams().getOrDefault("ids", Collections.emptyList()).stream()
+                .flatMap(x -> Arrays.stream(StringUtils.commaDelimitedListToStringArray(x)))
+                .map(String::trim)
+                .filter(StringUtils::hasLength)
+                .collect(toList());
+    }
+
+    /**
+     * body의 JSON array ["a", "b"]. body가 없으면 빈 list, JSON이 잘못됐거나 null id가 있으면 400.
+     */
+    public static Mono<List<String>> getIdsBody(ServerRequest serverRequest) {
+        return serverRequest.bodyToMono(IDS)
+                .onErrorMap(ServerRequestUtil::isMalformed, e -> new BadRequestException("malformed body", e))
+                .defaultIfEmpty(Collections.emptyList())
+                .flatMap(ids -> ids.contains(null) ? Mono.error(new BadRequestException("null id")) : Mono.just(ids));
+    }
+
+    /**
+     * Accept에 streaming media type(ndjson, stream+json, event-stream)이 있으면 그 중 가장 선호하는 것.
+     */
+    public static Optional<MediaType> getStreamingMediaType(ServerRequest serverRequest) {
+        List<MediaType> accept = new ArrayList<>(serverRequest.headers().accept());
+        MediaType.sortBySpecificityAndQuality(accept);
+        for (MediaType mediaType : accept) {
+            for (MediaType streaming : STREAMING_MEDIA_TYPES) {
+                if (mediaType.isConcrete() && streaming.isCompatibleWith(mediaType)) {
+                    return Optional.of(streaming);
+                }
+            }
+        }
+        return Optional.empty();
     }
 }
@@ -0,0 +1,28 @@
+package userserver.util;
+
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import userserver.repository.Cursor;
+
+import java.util.function.Function;
+
+import static org.springframework.web.reactive.function.BodyInserters.fromObject;
+import static org.springframework.web.reactive.function.server.ServerResponse.ok;
+
+public class ServerResponseUtil {
+    /**
+     * 한 페이지를 JSON 배열로 응답하고, 비어있지 않으면 마지막 document의 cursor를 X-Next-Cursor header로 준다.
+     */
+    public static <T> Mono<ServerResponse> okPage(Flux<T> page, Function<T, Cursor> cursorOf) {
+        return page
+                .collectList()
+                .flatMap(list -> {
+                    ServerResponse.BodyBuilder builder = ok();
+                    if (!list.isEmpty()) {
+                        builder.header(Cursor.NEXT_CURSOR_HEADER, cursorOf.apply(list.get(list.size() - 1)).encode());
+                    }
+                    return builder.body(fromObject(list));
+                });
+    }
+}
@@ -0,0 +1,74 @@
+package userserver.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 같은 key에 대한 조회가 동시에 들어오면 처음 요청의 Mono 하나를 같이 구독한다. (mongo query 한번, decode 한번)
+ * 조회가 끝나면 key는 바로 빠지기 때문에 cache가 아니다.
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter calls;
+    private final Counter coalesced;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.calls = Counter.builder("singleflight.calls")
+                .tag("name", name)
+                .description("lookups requested")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("singleflight.coalesced")
+                .tag("name", name)
+                .description("lookups that joined an in-flight lookup for the same key")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 조회는 처음 요청의 Reactor Context로 구독된다. (RequestTrace 같은 요청 단위 값이 처음 요청에만 남는다)
+     */
+    public Mono<V> execute(K key, Function<K, Mono<V>> loader) {
+        return Mono.subscriberContext().flatMap(context -> {
+            calls.increment();
+            Mono<V> running = inFlight.get(key);
+            if (running != null) {
+                coalesced.increment();
+                return running;
+            }
+            InFlight shared = new InFlight(key, loader, context);
+            running = inFlight.putIfAbsent(key, shared.mono);
+            if (running != null) {
+                coalesced.increment();
+                return running;
+            }
+            return shared.mono;
+        });
+    }
+
+    /**
+     * 진행중인 조회를 잊는다. 이미 구독한 쪽은 그대로 결과를 받고, 다음 요청부터는 새로 조회한다.
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    private class InFlight {
+        private final Mono<V> mono;
+
+        InFlight(K key, Function<K, Mono<V>> loader, Context context) {
+            this.mono = loader.apply(key)
+                    .doFinally(x -> release(key))
+                    .subscriberContext(context)
+                    .cache();
+        }
+
+        private void release(K key) {
+            inFlight.remove(key, mono);
+        }
+    }
+}
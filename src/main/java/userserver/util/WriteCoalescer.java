@@ -0,0 +1,116 @@
+package userserver.util;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import userserver.exception.ServiceUnavailableException;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * window 동안(또는 maxBatchSize개가 찰 때까지) 들어온 write를 모아서 writer 한 번으로 내보낸다.
+ * writer는 실패한 item만 index -> 예외로 돌려주고, 호출한 쪽은 각자 자기 item이나 예외를 받는다.
+ * writer 자체가 실패하면 그 batch의 모든 호출이 같은 예외를 받는다.
+ * writer가 느려서 IN_FLIGHT_BATCHES개가 진행중이면 다음 batch는 MAX_QUEUED_BATCHES개까지 기다리고, 그보다 많으면 503으로 실패한다.
+ */
+@Slf4j
+public class WriteCoalescer<T> implements Disposable {
+    /** 동시에 진행하는 batch 수 */
+    private static final int IN_FLIGHT_BATCHES = 4;
+    /** 진행중인 batch가 끝나기를 기다릴 수 있는 batch 수 */
+    private static final int MAX_QUEUED_BATCHES = 1024;
+
+    private final Function<List<T>, Mono<Map<Integer, Throwable>>> writer;
+    private final DistributionSummary batchSize;
+    private final Timer queueDelay;
+    private final Disposable subscription;
+    private volatile FluxSink<Pending<T>> queue;
+
+    public WriteCoalescer(String name, MeterRegistry meterRegistry, Duration window, int maxBatchSize,
+                          Function<List<T>, Mono<Map<Integer, Throwable>>> writer) {
+        this.writer = writer;
+        this.batchSize = DistributionSummary.builder("writecoalescer.batch.size")
+                .tag("name", name)
+                .description("writes sent in one bulkWrite")
+                .register(meterRegistry);
+        this.queueDelay = Timer.builder("writecoalescer.queue.delay")
+                .tag("name", name)
+                .description("time a write waited before its batch was sent")
+                .register(meterRegistry);
+        // bufferTimeout은 downstream의 request가 없을 때 window가 끝나면 OverflowException으로 끝나 버린다.
+        // 바로 뒤에서 batch를 쌓아 두게 해서 bufferTimeout은 항상 request를 가지고 있게 한다.
+        this.subscription = Flux.<Pending<T>>create(x -> this.queue = x)
+                .bufferTimeout(maxBatchSize, window)
+                .onBackpressureBuffer(MAX_QUEUED_BATCHES, this::reject, BufferOverflowStrategy.DROP_LATEST)
+                .flatMap(this::flush, IN_FLIGHT_BATCHES)
+                .doOnError(e -> log.error("write coalescer {} failed, restart", name, e))
+                .retry()
+                .subscribe();
+    }
+
+    public Mono<T> execute(T item) {
+        return Mono.create(x -> queue.next(new Pending<>(item, x, System.nanoTime())));
+    }
+
+    private void reject(List<Pending<T>> batch) {
+        ServiceUnavailableException error = new ServiceUnavailableException("too many pending writes");
+        batch.forEach(x -> x.sink.error(error));
+    }
+
+    private Mono<Void> flush(List<Pending<T>> batch) {
+        long now = System.nanoTime();
+        batchSize.record(batch.size());
+        batch.forEach(x -> queueDelay.record(now - x.enqueuedNanos, TimeUnit.NANOSECONDS));
+        return Mono.defer(() -> writer.apply(batch.stream().map(x -> x.item).collect(toList())))
+                .defaultIfEmpty(Collections.emptyMap())
+                .doOnNext(errors -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        Throwable error = errors.get(i);
+                        if (error == null) {
+                            batch.get(i).sink.success(batch.get(i).item);
+                        } else {
+                            batch.get(i).sink.error(error);
+                        }
+                    }
+                })
+                .doOnError(e -> batch.forEach(x -> x.sink.error(e)))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    @Override
+    public void dispose() {
+        subscription.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return subscription.isDisposed();
+    }
+
+    private static class Pending<T> {
+        private final T item;
+        private final MonoSink<T> sink;
+        private final long enqueuedNanos;
+
+        Pending(T item, MonoSink<T> sink, long enqueuedNanos) {
+            this.item = item;
+            this.sink = sink;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package userserver.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import userserver.domain.Club;
+import userserver.repository.ClubRepository;
+import userserver.util.DomainUtil;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 같은 mongo를 보는 두 node(A, B)를 흉내낸다.
+ */
+@RunWith(SpringRunner.class)
+@DataMongoTest
+public class CacheInvalidationBusTest {
+    @Autowired ClubRepository clubRepository;
+    @Autowired ReactiveMongoTemplate mongoTemplate;
+    CacheInvalidationBus busA;
+    CacheInvalidationBus busB;
+    ClubCache cacheA;
+    ClubCache cacheB;
+
+    @Before
+    public void setUp() {
+        clubRepository.deleteAll().block();
+        busA = new CacheInvalidationBus(mongoTemplate, true, 1024 * 1024, 1000, 50);
+        busB = new CacheInvalidationBus(mongoTemplate, true, 1024 * 1024, 1000, 50);
+        cacheA = new ClubCache(clubRepository, new SimpleMeterRegistry(), busA, 100, 60);
+        cacheB = new ClubCache(clubRepository, new SimpleMeterRegistry(), busB, 100, 60);
+        busA.start();
+        busB.start();
+    }
+
+    @After
+    public void tearDown() {
+        busA.stop();
+        busB.stop();
+    }
+
+    @Test
+    public void evict_on_one_node_then_evicted_on_other_node() throws InterruptedException {
+        Club club = DomainUtil.createClub(clubRepository);
+        cacheA.get(club.getId()).block();
+        cacheB.get(club.getId()).block();
+
+        club.setName("modify name");
+        clubRepository.save(club).block();
+        cacheA.evict(club.getId()).block();
+
+        String name = null;
+        for (int i = 0; i < 100 && !"modify name".equals(name); i++) {
+            Thread.sleep(50);
+            name = cacheB.get(club.getId()).block().getName();
+        }
+        assertThat(name).isEqualTo("modify name");
+    }
+
+    /**
+     * 다른 node의 시계가 늦으면 나중에 들어온 event의 _id가 더 작다. _id 순서가 아니라 저장 순서로 읽어야 한다.
+     */
+    @Test
+    public void event_with_smaller_id_from_other_node_then_evicted() throws InterruptedException {
+        List<String> evicted = new CopyOnWriteArrayList<>();
+        busA.register("test", evicted::add, evicted::clear);
+
+        insertEvent("skewed", 3600_000);
+
+        assertThat(await(evicted, 1)).containsExactly("skewed");
+    }
+
+    @Test
+    public void restart_then_resume_after_last_seen_event() throws InterruptedException {
+        List<String> evicted = new CopyOnWriteArrayList<>();
+        busA.register("test", evicted::add, evicted::clear);
+        insertEvent("before stop", 0);
+        await(evicted, 1);
+
+        busA.stop();
+        insertEvent("while stopped", 3600_000);
+        busA.start();
+        insertEvent("after start", 7200_000);
+
+        assertThat(await(evicted, 3)).containsExactly("before stop", "while stopped", "after start");
+    }
+
+    private void insertEvent(String key, long skewMillis) {
+        CacheEvent event = new CacheEvent("test", key, "other node");
+        event.setId(new ObjectId(new Date(System.currentTimeMillis() - skewMillis)).toHexString());
+        mongoTemplate.insert(event).block();
+    }
+
+    private static List<String> await(List<String> evicted, int size) throws InterruptedException {
+        for (int i = 0; i < 100 && evicted.size() < size; i++) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(100);
+        return evicted;
+    }
+}
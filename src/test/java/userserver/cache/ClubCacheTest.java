@@ -0,0 +1,134 @@
+package userserver.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import reactor.core.publisher.Mono;
+import userserver.domain.Club;
+import userserver.repository.ClubRepository;
+import userserver.util.DomainUtil;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+@RunWith(SpringRunner.class)
+@DataMongoTest
+public class ClubCacheTest {
+    @Autowired ClubRepository clubRepository;
+    @Autowired ReactiveMongoTemplate mongoTemplate;
+    MeterRegistry meterRegistry;
+    ClubCache clubCache;
+
+    @Before
+    public void setUp() {
+        clubRepository.deleteAll().block();
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.clubCache = new ClubCache(clubRepository, meterRegistry, new CacheInvalidationBus(mongoTemplate, false, 0, 0, 0), 2, 60);
+    }
+
+    @Test
+    public void get_read_through() {
+        Club club = DomainUtil.createClub(clubRepository);
+        Club first = clubCache.get(club.getId()).block();
+        clubRepository.deleteAll().block();
+        Club second = clubCache.get(club.getId()).block();
+
+        assertThat(first).isEqualTo(club);
+        assertThat(second).isSameAs(first);
+        assertThat(gets("miss")).isEqualTo(1);
+        assertThat(gets("hit")).isEqualTo(1);
+    }
+
+    @Test
+    public void get_not_found_then_empty() {
+        assertThat(clubCache.get("unknown").block()).isNull();
+    }
+
+    @Test
+    public void getAll_in_request_order() {
+        Club cached = DomainUtil.createClub(clubRepository);
+        Club loaded = DomainUtil.createClub(clubRepository);
+        clubCache.get(cached.getId()).block();
+        clubRepository.deleteById(cached.getId()).block();
+
+        List<Club> clubs = clubCache.getAll(Arrays.asList(loaded.getId(), "unknown", cached.getId(), loaded.getId())).collectList().block();
+
+        assertThat(clubs).containsExactly(loaded, cached, loaded);
+        assertThat(clubCache.get(loaded.getId()).block()).isSameAs(clubs.get(0));
+    }
+
+    @Test
+    public void evict() {
+        Club club = DomainUtil.createClub(clubRepository);
+        clubCache.get(club.getId()).block();
+        club.setName("modify name");
+        clubRepository.save(club).block();
+        clubCache.evict(club.getId());
+
+        assertThat(clubCache.get(club.getId()).block().getName()).isEqualTo("modify name");
+        assertThat(gets("miss")).isEqualTo(2);
+    }
+
+    @Test
+    public void evict_when_publish_fails_then_completes() {
+        ReactiveMongoOperations failing = mock(ReactiveMongoOperations.class);
+        given(failing.collectionExists(CacheEvent.class)).willReturn(Mono.just(true));
+        given(failing.insert(any(CacheEvent.class))).willReturn(Mono.error(new IllegalStateException("mongo down")));
+        ClubCache cache = new ClubCache(clubRepository, meterRegistry, new CacheInvalidationBus(failing, true, 0, 0, 0), 2, 60);
+        Club club = DomainUtil.createClub(clubRepository);
+        cache.get(club.getId()).block();
+        club.setName("modify name");
+        clubRepository.save(club).block();
+
+        cache.evict(club.getId()).block();
+
+        assertThat(cache.get(club.getId()).block().getName()).isEqualTo("modify name");
+    }
+
+    /**
+     * 조회가 끝나기 전에 evict 되면, 조회한 (이미 오래된) club을 cache에 넣지 않는다.
+     */
+    @Test
+    public void evict_during_load_then_stale_club_not_cached() throws Exception {
+        ClubRepository slow = (ClubRepository) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ClubRepository.class},
+                (proxy, method, args) -> {
+                    try {
+                        Object result = method.invoke(clubRepository, args);
+                        return method.getName().equals("findById") ? ((Mono<?>) result).delayElement(Duration.ofMillis(300)) : result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        ClubCache cache = new ClubCache(slow, meterRegistry, new CacheInvalidationBus(mongoTemplate, false, 0, 0, 0), 2, 60);
+        Club club = DomainUtil.createClub(clubRepository);
+
+        CompletableFuture<Club> loading = cache.get(club.getId()).toFuture();
+        Thread.sleep(100);
+        club.setName("modify name");
+        clubRepository.save(club).block();
+        cache.evict(club.getId()).block();
+
+        assertThat(loading.get().getName()).isEqualTo("test");
+        assertThat(cache.get(club.getId()).block().getName()).isEqualTo("modify name");
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", ClubCache.NAME).tag("result", result).functionCounter().count();
+    }
+}
@@ -1,5 +1,6 @@
 package userserver.handler;
 
+import userserver.exception.BadRequestException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -26,12 +27,13 @@ import javax.validation.Validator;
 import javax.validation.ValidatorFactory;
 
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 
 @RunWith(SpringRunner.class)
@@ -92,6 +94,15 @@ public class ClubHandlerTest {
                 .verify();
     }
 
+    @Test
+    public void getUserList_invalid_page() {
+        given(clubService.getMaxPage()).willReturn(10);
+        for (String page : new String[]{"abc", "-1", "1e3", "99999999999", "11"}) {
+            MockServerRequest request = MockServerRequest.builder().pathVariable("page", page).build();
+            assertThatThrownBy(() -> handler.getList(request)).isInstanceOf(BadRequestException.class);
+        }
+    }
+
     @Test
     public void delete() {
         MockServerRequest request = MockServerRequest.builder().body(Mono.just("testId"));
@@ -109,8 +120,7 @@ public class ClubHandlerTest {
 
     @Test
     public void join() {
-        Map<String, String> map = new HashMap<>();
-        MockServerRequest request = MockServerRequest.builder().body(Mono.just(map));
+        MockServerRequest request = MockServerRequest.builder().body(Mono.just(new ClubUserId("club", "user")));
         given(clubService.join(any(), any())).willReturn(Mono.just(JoinResult.SUCCESS));
         Mono<ServerResponse> response = handler.join(request);
         StepVerifier.create(response)
@@ -123,8 +133,7 @@ public class ClubHandlerTest {
 
     @Test
     public void join_not_allow_age() {
-        Map<String, String> map = new HashMap<>();
-        MockServerRequest request = MockServerRequest.builder().body(Mono.just(map));
+        MockServerRequest request = MockServerRequest.builder().body(Mono.just(new ClubUserId("club", "user")));
         given(clubService.join(any(), any())).willReturn(Mono.just(JoinResult.FAIL_NOT_ALLOW_AGE));
         Mono<ServerResponse> response = handler.join(request);
         StepVerifier.create(response)
@@ -135,10 +144,22 @@ public class ClubHandlerTest {
                 .verify();
     }
 
+    @Test
+    public void join_club_is_full() {
+        MockServerRequest request = MockServerRequest.builder().body(Mono.just(new ClubUserId("club", "user")));
+        given(clubService.join(any(), any())).willReturn(Mono.just(JoinResult.FAIL_CLUB_IS_FULL));
+        Mono<ServerResponse> response = handler.join(request);
+        StepVerifier.create(response)
+                .consumeNextWith(x -> {
+                    assertThat(x.statusCode()).isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+                })
+                .expectComplete()
+                .verify();
+    }
+
     @Test
     public void join_not_found() {
-        Map<String, String> map = new HashMap<>();
-        MockServerRequest request = MockServerRequest.builder().body(Mono.just(map));
+        MockServerRequest request = MockServerRequest.builder().body(Mono.just(new ClubUserId("club", "user")));
         given(clubService.join(any(), any())).willReturn(Mono.just(JoinResult.NOT_FOUND));
         Mono<ServerResponse> response = handler.join(request);
         StepVerifier.create(response)
@@ -149,11 +170,30 @@ public class ClubHandlerTest {
                 .verify();
     }
 
+    @Test
+    public void join_missing_ids_then_400() {
+        for (ClubUserId ids : new ClubUserId[]{new ClubUserId(), new ClubUserId("club", null), new ClubUserId(null, "user")}) {
+            MockServerRequest request = MockServerRequest.builder().body(Mono.just(ids));
+            StepVerifier.create(handler.join(request))
+                    .expectError(BadRequestException.class)
+                    .verify();
+        }
+        verify(clubService, never()).join(any(), any());
+    }
+
+    @Test
+    public void join_empty_body_then_400() {
+        MockServerRequest request = MockServerRequest.builder().body(Mono.empty());
+        StepVerifier.create(handler.join(request))
+                .expectError(BadRequestException.class)
+                .verify();
+    }
+
     @Test
     public void leave() {
         UserId m = new UserId("user");
         MockServerRequest request = MockServerRequest.builder().body(Mono.just(m));
-        given(clubService.leave(any())).willReturn(Mono.just(new User()));
+        given(clubService.leave(any())).willReturn(Mono.just(1L));
         Mono<ServerResponse> response = handler.leave(request);
         StepVerifier.create(response)
                 .consumeNextWith(x -> {
@@ -164,9 +204,32 @@ public class ClubHandlerTest {
     }
 
     @Test
-    public void leave_user_not_found_then_404() {
+    public void leave_unknown_user_then_404() {
+        UserId m = new UserId("unknown");
+        MockServerRequest request = MockServerRequest.builder().body(Mono.just(m));
+        given(clubService.leave(any())).willReturn(Mono.just(0L));
+        Mono<ServerResponse> response = handler.leave(request);
+        StepVerifier.create(response)
+                .consumeNextWith(x -> {
+                    assertThat(x.statusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+                })
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    public void leave_empty_body_then_400() {
         MockServerRequest request = MockServerRequest.builder().body(Mono.empty());
-        given(clubService.leave(any())).willReturn(Mono.just(new User()));
+        StepVerifier.create(handler.leave(request))
+                .expectError(BadRequestException.class)
+                .verify();
+        verify(clubService, never()).leave(any());
+    }
+
+    @Test
+    public void leave_user_not_found_then_404() {
+        MockServerRequest request = MockServerRequest.builder().body(Mono.just(new UserId("unknown")));
+        given(clubService.leave("unknown")).willReturn(Mono.just(0L));
         Mono<ServerResponse> response = handler.leave(request);
         StepVerifier.create(response)
                 .consumeNextWith(x -> {
@@ -175,4 +238,13 @@ public class ClubHandlerTest {
                 .expectComplete()
                 .verify();
     }
+
+    @Test
+    public void leave_missing_user_id_then_400() {
+        MockServerRequest request = MockServerRequest.builder().body(Mono.just(new UserId()));
+        StepVerifier.create(handler.leave(request))
+                .expectError(BadRequestException.class)
+                .verify();
+        verify(clubService, never()).leave(any());
+    }
 }
\ No newline at end of file
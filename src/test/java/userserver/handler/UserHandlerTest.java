@@ -1,10 +1,15 @@
 package userserver.handler;
 
+import userserver.exception.BadRequestException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import reactor.core.publisher.Flux;
+import userserver.configuration.CodecConfiguration;
 import userserver.domain.Club;
 import userserver.domain.User;
+import userserver.exception.UnprocessableEntityException;
 import userserver.handler.validator.ModelValidator;
+import userserver.repository.Cursor;
 import userserver.model.TestModelFactory;
 import userserver.service.UserService;
 import org.junit.Before;
@@ -25,6 +30,7 @@ import javax.validation.ValidatorFactory;
 import java.util.Date;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 
@@ -69,6 +75,40 @@ public class UserHandlerTest {
 
     }
 
+    @Test
+    public void patch() {
+        User changes = new User();
+        changes.setName("new name");
+        MockServerRequest request = MockServerRequest.builder().pathVariable("id", "userid").body(Mono.just(changes));
+        given(userService.patch("userid", changes)).willReturn(Mono.just(1L));
+        StepVerifier.create(handler.patch(request))
+                .consumeNextWith(x -> assertThat(x.statusCode()).isEqualTo(HttpStatus.OK))
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    public void patch_invalid_field_then_422() {
+        User changes = new User();
+        changes.setAge(-1);
+        MockServerRequest request = MockServerRequest.builder().pathVariable("id", "userid").body(Mono.just(changes));
+        StepVerifier.create(handler.patch(request))
+                .expectError(UnprocessableEntityException.class)
+                .verify();
+    }
+
+    @Test
+    public void patch_unknown_user_then_404() {
+        User changes = new User();
+        changes.setName("new name");
+        MockServerRequest request = MockServerRequest.builder().pathVariable("id", "unknown").body(Mono.just(changes));
+        given(userService.patch("unknown", changes)).willReturn(Mono.just(0L));
+        StepVerifier.create(handler.patch(request))
+                .consumeNextWith(x -> assertThat(x.statusCode()).isEqualTo(HttpStatus.NOT_FOUND))
+                .expectComplete()
+                .verify();
+    }
+
     @Test
     public void getUserList() {
         MockServerRequest request = MockServerRequest.builder().pathVariable("page", "0").build();
@@ -82,6 +122,48 @@ public class UserHandlerTest {
                 .verify();
     }
 
+    @Test
+    public void getUserList_invalid_page() {
+        given(userService.getMaxPage()).willReturn(10);
+        for (String page : new String[]{"abc", "-1", "1e3", "99999999999", "11"}) {
+            MockServerRequest request = MockServerRequest.builder().pathVariable("page", page).build();
+            assertThatThrownBy(() -> handler.getList(request)).isInstanceOf(BadRequestException.class);
+        }
+    }
+
+    @Test
+    public void getUserList_cursor() {
+        User user = TestModelFactory.createUser();
+        user.setId("testid");
+        MockServerRequest request = MockServerRequest.builder().build();
+        given(userService.getList((Cursor) null)).willReturn(Flux.just(user));
+        Mono<ServerResponse> response = handler.getList(request);
+        StepVerifier.create(response)
+                .consumeNextWith(x -> {
+                    assertThat(x.statusCode()).isEqualTo(HttpStatus.OK);
+                    String next = x.headers().getFirst(Cursor.NEXT_CURSOR_HEADER);
+                    assertThat(Cursor.decode(next)).isEqualTo(new Cursor(user.getCreateDate(), user.getId()));
+                })
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    public void getUserList_ndjson() {
+        MockServerRequest request = MockServerRequest.builder()
+                .header(HttpHeaders.ACCEPT, CodecConfiguration.APPLICATION_NDJSON.toString())
+                .build();
+        given(userService.getAll(null)).willReturn(Flux.empty());
+        Mono<ServerResponse> response = handler.getList(request);
+        StepVerifier.create(response)
+                .consumeNextWith(x -> {
+                    assertThat(x.statusCode()).isEqualTo(HttpStatus.OK);
+                    assertThat(x.headers().getContentType()).isEqualTo(CodecConfiguration.APPLICATION_NDJSON);
+                })
+                .expectComplete()
+                .verify();
+    }
+
     @Test
     public void getUser() {
         User user = TestModelFactory.createUser();
@@ -124,6 +206,16 @@ public class UserHandlerTest {
                 .verify();
     }
 
-
-
-}
\ No newline at end of file
+    @Test
+    public void getClub_not_joined_then_404() {
+        MockServerRequest request = MockServerRequest.builder().pathVariable("id", "testId").build();
+        given(userService.getClub("testId")).willReturn(Mono.empty());
+        Mono<ServerResponse> response = handler.getClub(request);
+        StepVerifier.create(response)
+                .consumeNextWith(x -> {
+                    assertThat(x.statusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+                })
+                .expectComplete()
+                .verify();
+    }
+}
@@ -0,0 +1,149 @@
+package userserver.handler.validator;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.junit.Test;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import reactor.test.StepVerifier;
+import userserver.domain.Club;
+import userserver.domain.User;
+import userserver.exception.UnprocessableEntityException;
+import userserver.model.TestModelFactory;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.constraints.Email;
+import javax.validation.constraints.NotBlank;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toSet;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ModelValidatorTest {
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final ModelValidator modelValidator = new ModelValidator(validator);
+
+    @Test
+    public void valid_model() {
+        User user = TestModelFactory.createUser();
+        StepVerifier.create(modelValidator.validate(user))
+                .expectNext(user)
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    public void invalid_model_returns_violations() {
+        User user = new User("", -1, new Date());
+        StepVerifier.create(modelValidator.validate(user))
+                .expectErrorSatisfies(e -> {
+                    assertThat(e).isInstanceOf(UnprocessableEntityException.class);
+                    assertThat(((UnprocessableEntityException) e).getViolations()).containsExactlyInAnyOrder(
+                            new Violation("name", "NotBlank", "must not be blank"),
+                            new Violation("age", "Positive", "must be greater than 0"));
+                })
+                .verify();
+    }
+
+    @Test
+    public void size_message_has_attributes() {
+        Club club = new Club("club", 19, new Date());
+        assertThat(modelValidator.violations(club, null))
+                .containsExactly(new Violation("name", "Size", "size must be between 5 and 20"));
+    }
+
+    @Test
+    public void only_given_properties() {
+        User user = new User("", -1, new Date());
+        assertThat(modelValidator.violations(user, Collections.singleton("age")))
+                .containsExactly(new Violation("age", "Positive", "must be greater than 0"));
+    }
+
+    /**
+     * compile 한 검사와 javax Validator가 같은 field, 같은 constraint를 잡는다.
+     */
+    @Test
+    public void same_as_bean_validation() {
+        Club noSeats = TestModelFactory.createClub();
+        noSeats.setMaxMembers(0);
+        List<Object> models = Arrays.asList(
+                TestModelFactory.createUser(), new User("", -1, new Date()), new User(" ", 0, new Date()),
+                TestModelFactory.createClub(), new Club("club", 0, new Date()), new Club("a very long club name", -5, new Date()), noSeats);
+        assertSameAsBeanValidation(models);
+    }
+
+    /**
+     * @NotBlank는 trim 기준이다. 제어 문자는 공백이고, U+2003 같은 unicode 공백은 공백이 아니다.
+     */
+    @Test
+    public void same_as_bean_validation_edge_values() {
+        Club unlimited = TestModelFactory.createClub();
+        unlimited.setMaxMembers(null);
+        Club maxInt = new Club("club name", Integer.MAX_VALUE, new Date());
+        maxInt.setMaxMembers(Integer.MIN_VALUE);
+        List<Object> models = Arrays.asList(
+                new User(), new Club(), unlimited, maxInt,
+                new User("\u0000", 1, new Date()), new User("\u2003", Integer.MAX_VALUE, new Date()),
+                new User("\t\n\r", Integer.MIN_VALUE, new Date()), new User("\u00a0", 1, new Date()), new User(" a ", 1, new Date()),
+                new Club("\u0000\u0000\u0000\u0000\u0000", 1, new Date()), new Club("\u2003\u2003\u2003\u2003\u2003", 1, new Date()),
+                new Club("     ", 1, new Date()), new Club("12345", 1, new Date()), new Club("1234", 1, new Date()),
+                new Club("12345678901234567890", 1, new Date()), new Club("123456789012345678901", 1, new Date()));
+        assertSameAsBeanValidation(models);
+    }
+
+    private void assertSameAsBeanValidation(List<Object> models) {
+        for (Object model : models) {
+            Set<Violation> expected = validator.validate(model).stream()
+                    .map(x -> new Violation(x.getPropertyPath().toString(),
+                            x.getConstraintDescriptor().getAnnotation().annotationType().getSimpleName(), x.getMessage()))
+                    .collect(toSet());
+            assertThat(modelValidator.violations(model, null)).as(model.toString()).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    /**
+     * spring Validator의 MessageSource와 요청의 locale로 message를 만든다.
+     */
+    @Test
+    public void message_from_spring_message_source_and_locale() {
+        StaticMessageSource messageSource = new StaticMessageSource();
+        messageSource.addMessage("javax.validation.constraints.NotBlank.message", Locale.ENGLISH, "name is required");
+        messageSource.addMessage("javax.validation.constraints.NotBlank.message", Locale.KOREAN, "이름을 입력하세요");
+        LocalValidatorFactoryBean springValidator = new LocalValidatorFactoryBean();
+        springValidator.setValidationMessageSource(messageSource);
+        springValidator.afterPropertiesSet();
+        ModelValidator validator = new ModelValidator(springValidator);
+        User user = new User("", 1, new Date());
+        try {
+            LocaleContextHolder.setLocale(Locale.ENGLISH);
+            assertThat(validator.violations(user, null)).containsExactly(new Violation("name", "NotBlank", "name is required"));
+            LocaleContextHolder.setLocale(Locale.KOREAN);
+            assertThat(validator.violations(user, null)).containsExactly(new Violation("name", "NotBlank", "이름을 입력하세요"));
+        } finally {
+            LocaleContextHolder.resetLocaleContext();
+            springValidator.close();
+        }
+    }
+
+    @Test
+    public void unsupported_constraint_falls_back_to_bean_validation() {
+        assertThat(modelValidator.violations(new Contact("name", "not an email"), null))
+                .containsExactly(new Violation("email", "Email", "must be a well-formed email address"));
+        assertThat(modelValidator.violations(new Contact("", "a@b.com"), null))
+                .containsExactly(new Violation("name", "NotBlank", "must not be blank"));
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Contact {
+        @NotBlank private String name;
+        @Email private String email;
+    }
+}
@@ -13,14 +13,18 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.test.StepVerifier;
 import userserver.domain.Club;
 import userserver.domain.User;
+import userserver.enums.JoinResult;
 import userserver.handler.model.ClubUserId;
+import userserver.handler.model.ClubUserResult;
 import userserver.handler.model.UserId;
 import userserver.model.TestModelFactory;
 import userserver.repository.ClubRepository;
+import userserver.repository.Cursor;
 import userserver.repository.UserRepository;
 import userserver.util.DomainUtil;
 
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -170,6 +174,34 @@ public class ClubIntegrationTest {
                 });
     }
 
+    @Test
+    public void getMembers() {
+        Club club = DomainUtil.createClub(clubRepository);
+        User user = DomainUtil.createUser(userRepository);
+        user.setClubId(club.getId());
+        userRepository.save(user).block();
+
+        this.client
+                .get()
+                .uri(String.format("/api/club/%s/members", club.getId()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(Cursor.NEXT_CURSOR_HEADER, new Cursor(user.getCreateDate(), user.getId()).encode())
+                .expectBody(User[].class)
+                .consumeWith(x -> {
+                    assertThat(x.getResponseBody()).containsExactly(user);
+                });
+    }
+
+    @Test
+    public void getMembers_unknown_club_then_404() {
+        this.client
+                .get()
+                .uri("/api/club/unknown/members")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
     /**
      * DELETE
      */
@@ -227,6 +259,92 @@ public class ClubIntegrationTest {
                 });
     }
 
+    @Test
+    public void join_missing_user_id_then_400() {
+        Map<String, String> map = new HashMap<>();
+        map.put("clubId", "club");
+        this.client
+                .post()
+                .uri("/api/club/join")
+                .body(fromObject(map))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void join_malformed_body_then_400() {
+        this.client
+                .post()
+                .uri("/api/club/join")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody("{\"clubId\": \"club\", \"userId\": ")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void join_batch() {
+        Club club = DomainUtil.createClub(clubRepository);
+        User user1 = DomainUtil.createUser(userRepository);
+        User user2 = DomainUtil.createUser(userRepository);
+        List<ClubUserId> pairs = Arrays.asList(
+                new ClubUserId(club.getId(), user1.getId()),
+                new ClubUserId("unknown", user2.getId()),
+                new ClubUserId(club.getId(), user2.getId()));
+        this.client
+                .post()
+                .uri("/api/club/join/batch")
+                .body(fromObject(pairs))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ClubUserResult.class)
+                .consumeWith(x -> assertThat(x.getResponseBody()).extracting(ClubUserResult::getResult)
+                        .containsExactly(JoinResult.SUCCESS, JoinResult.NOT_FOUND, JoinResult.SUCCESS));
+        assertThat(userRepository.findByClubId(club.getId()).count().block()).isEqualTo(2);
+
+        this.client
+                .post()
+                .uri("/api/club/leave/batch")
+                .body(fromObject(pairs.subList(0, 1)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ClubUserResult.class)
+                .consumeWith(x -> assertThat(x.getResponseBody()).extracting(ClubUserResult::getResult)
+                        .containsExactly(JoinResult.SUCCESS));
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void join_batch_missing_id_then_400_and_nothing_joined() {
+        Club club = DomainUtil.createClub(clubRepository);
+        User user = DomainUtil.createUser(userRepository);
+        for (String body : Arrays.asList(
+                "[{\"clubId\": \"" + club.getId() + "\", \"userId\": \"" + user.getId() + "\"}, {\"clubId\": \"" + club.getId() + "\"}]",
+                "[{\"clubId\": \"" + club.getId() + "\", \"userId\": \"" + user.getId() + "\"}, null]")) {
+            this.client
+                    .post()
+                    .uri("/api/club/join/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .syncBody(body)
+                    .exchange()
+                    .expectStatus().isBadRequest();
+        }
+        assertThat(userRepository.findByClubId(club.getId()).count().block()).isEqualTo(0);
+    }
+
+    @Test
+    public void join_leave_batch_malformed_body_then_400() {
+        for (String uri : Arrays.asList("/api/club/join/batch", "/api/club/leave/batch")) {
+            this.client
+                    .post()
+                    .uri(uri)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .syncBody("[{\"clubId\": \"club\", \"userId\": ")
+                    .exchange()
+                    .expectStatus().isBadRequest();
+        }
+    }
+
     @Test
     public void leave() {
         User user = DomainUtil.createUser(userRepository);
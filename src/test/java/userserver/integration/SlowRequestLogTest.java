@@ -0,0 +1,115 @@
+package userserver.integration;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import userserver.domain.User;
+import userserver.handler.RouteMetrics;
+import userserver.handler.SlowRequestLog;
+import userserver.model.TestModelFactory;
+import userserver.repository.ClubRepository;
+import userserver.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.web.reactive.function.BodyInserters.fromObject;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+import static org.springframework.web.reactive.function.server.ServerResponse.ok;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "clubservice.slow-request.threshold-millis=0")
+public class SlowRequestLogTest {
+    @Autowired UserRepository userRepository;
+    @Autowired ClubRepository clubRepository;
+    @LocalServerPort private int port;
+    private WebTestClient client;
+    private ListAppender<ILoggingEvent> appender;
+
+    @Before
+    public void setup() {
+        userRepository.deleteAll().block();
+        clubRepository.deleteAll().block();
+
+        this.client = WebTestClient
+                .bindToServer()
+                .responseTimeout(Duration.ofSeconds(10))
+                .baseUrl("http://localhost:" + this.port)
+                .build();
+        appender = new ListAppender<>();
+        appender.start();
+        ((Logger) LoggerFactory.getLogger(SlowRequestLog.class)).addAppender(appender);
+    }
+
+    @After
+    public void tearDown() {
+        ((Logger) LoggerFactory.getLogger(SlowRequestLog.class)).detachAppender(appender);
+    }
+
+    @Test
+    public void save_logs_decode_validate_repository_and_encode() throws InterruptedException {
+        User user = TestModelFactory.createUser();
+        this.client.post().uri("/api/user")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(fromObject(user))
+                .exchange()
+                .expectStatus().isCreated();
+
+        String line = slowRequestLine("route=user.save");
+        assertThat(line).contains("status=201", "decode=", "ModelValidator.validate=", "UserRepository.saveDetails=", "encode=");
+    }
+
+    @Test
+    public void get_logs_path_variable_ids() throws InterruptedException {
+        User user = userRepository.save(TestModelFactory.createUser()).block();
+        this.client.get().uri("/api/user/{id}", user.getId())
+                .exchange()
+                .expectStatus().isOk();
+
+        String line = slowRequestLine("route=user.get");
+        assertThat(line).contains("ids={id=" + user.getId() + "}", "UserRepository.findById=", "encode=");
+    }
+
+    @Test
+    public void fast_request_is_not_logged() {
+        SlowRequestLog slowRequestLog = new SlowRequestLog(60_000);
+        WebTestClient.bindToRouterFunction(route(GET("/fast"), RouteMetrics.named("fast", request -> ok().build()))
+                .filter(slowRequestLog))
+                .build()
+                .get().uri("/fast").exchange().expectStatus().isOk();
+
+        assertThat(appender.list).isEmpty();
+    }
+
+    /**
+     * 로그는 response를 다 쓰고 나서 남기므로 client가 응답을 받은 뒤에 찍힐 수 있다.
+     */
+    private String slowRequestLine(String route) throws InterruptedException {
+        List<String> lines = Collections.emptyList();
+        for (int i = 0; i < 50 && lines.isEmpty(); i++) {
+            Thread.sleep(20);
+            lines = appender.list.stream()
+                    .map(ILoggingEvent::getFormattedMessage)
+                    .filter(x -> x.contains(route + " "))
+                    .collect(Collectors.toList());
+        }
+        assertThat(lines).hasSize(1);
+        return lines.get(0);
+    }
+}
@@ -1,10 +1,13 @@
 package userserver.integration;
 
 import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Flux;
+import userserver.configuration.CodecConfiguration;
 import userserver.domain.Club;
 import userserver.domain.User;
 import userserver.model.TestModelFactory;
 import userserver.repository.ClubRepository;
+import userserver.repository.Cursor;
 import userserver.repository.UserRepository;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,7 +22,11 @@ import reactor.test.StepVerifier;
 import userserver.util.DomainUtil;
 
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.web.reactive.function.BodyInserters.fromObject;
@@ -76,7 +83,10 @@ public class UserIntegrationTest {
                 .body(fromObject(user))
                 .exchange()
                 .expectStatus()
-                .isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+                .isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY)
+                .expectBody()
+                .jsonPath("$.violations[?(@.field == 'name')].constraint").isEqualTo("NotBlank")
+                .jsonPath("$.violations[?(@.field == 'age')].message").isEqualTo("must be greater than 0");
 //                .is4xxClientError()
     }
 
@@ -121,6 +131,86 @@ public class UserIntegrationTest {
                 });
     }
 
+    @Test
+    public void patch() {
+        User user = DomainUtil.createUser(userRepository);
+        Map<String, Object> changes = Collections.singletonMap("name", "patched");
+        this.client
+                .patch()
+                .uri("/api/user/" + user.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(fromObject(changes))
+                .exchange()
+                .expectStatus().isOk();
+        User patched = userRepository.findById(user.getId()).block();
+        assertThat(patched.getName()).isEqualTo("patched");
+        assertThat(patched.getAge()).isEqualTo(user.getAge());
+
+        this.client
+                .patch()
+                .uri("/api/user/" + user.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(fromObject(Collections.singletonMap("age", -1)))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    public void prometheus_exposes_route_metrics() {
+        User user = DomainUtil.createUser(userRepository);
+        this.client.get().uri("/api/user/" + user.getId()).exchange().expectStatus().isOk();
+        this.client
+                .get()
+                .uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .consumeWith(x -> assertThat(x.getResponseBody())
+                        .contains("http_route_requests_seconds_bucket{route=\"user.get\"")
+                        .contains("http_route_requests_seconds{route=\"user.get\",quantile=\"0.99\"")
+                        .contains("http_route_responses_total{route=\"user.get\",status=\"200\"")
+                        .contains("http_route_in_flight{route=\"user.get\"")
+                        .contains("mongodb_command_seconds_count{collection=\"users\",command=\"find\",status=\"success\"")
+                        .contains("mongodb_pool_checked_out{server="));
+    }
+
+    @Test
+    public void getByIds() {
+        List<User> users = DomainUtil.createUsers(userRepository);
+        String ids = users.get(1).getId() + ",unknown," + users.get(0).getId();
+        this.client
+                .get()
+                .uri("/api/user?ids=" + ids)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .consumeWith(x -> assertThat(x.getResponseBody()).containsExactly(users.get(1), users.get(0)));
+
+        this.client
+                .post()
+                .uri("/api/user/batch-get")
+                .body(fromObject(Arrays.asList(users.get(0).getId(), users.get(1).getId())))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .consumeWith(x -> assertThat(x.getResponseBody()).containsExactly(users.get(0), users.get(1)));
+    }
+
+    @Test
+    public void batchGet_null_id_or_malformed_body_then_400() {
+        for (String uri : Arrays.asList("/api/user/batch-get", "/api/club/batch-get")) {
+            for (String body : Arrays.asList("[\"id\", null]", "[\"id\", ")) {
+                this.client
+                        .post()
+                        .uri(uri)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .syncBody(body)
+                        .exchange()
+                        .expectStatus().isBadRequest();
+            }
+        }
+    }
+
     @Test
     public void getList() {
         DomainUtil.createUsers(userRepository);
@@ -158,6 +248,92 @@ public class UserIntegrationTest {
                 });
     }
 
+    @Test
+    public void getList_cursor() {
+        List<User> users = DomainUtil.createUsers(userRepository);
+        users.sort(Comparator.comparing(User::getCreateDate));
+        String next = this.client
+                .get()
+                .uri("/api/user/list")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(List.class).returnResult()
+                .getResponseHeaders().getFirst(Cursor.NEXT_CURSOR_HEADER);
+
+        this.client
+                .get()
+                .uri("/api/user/list?cursor=" + next)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User[].class)
+                .consumeWith(x -> {
+                    User[] list = x.getResponseBody();
+                    assertThat(list).hasSize(10);
+                    assertThat(list[0].getId()).isEqualTo(users.get(10).getId());
+                });
+    }
+
+    @Test
+    public void getList_ndjson_streams_all() {
+        DomainUtil.createUsers(userRepository);
+        this.client
+                .get()
+                .uri("/api/user/list")
+                .accept(CodecConfiguration.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(CodecConfiguration.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .consumeWith(x -> {
+                    String[] lines = x.getResponseBody().split("\n");
+                    assertThat(lines).hasSize(100);
+                    assertThat(lines[0]).startsWith("{").endsWith("}");
+                });
+    }
+
+    @Test
+    public void getList_event_stream() {
+        DomainUtil.createUsers(userRepository);
+        Flux<User> body = this.client
+                .get()
+                .uri("/api/user/list")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(User.class)
+                .getResponseBody();
+
+        StepVerifier.create(body)
+                .expectNextCount(100)
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    public void getList_invalid_cursor_then_400() {
+        this.client
+                .get()
+                .uri("/api/user/list?cursor=invalid")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getList_invalid_page_then_400() {
+        this.client
+                .get()
+                .uri("/api/user/list/abc")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        // page * paging-size가 int를 넘는 page
+        this.client
+                .get()
+                .uri("/api/club/list/" + Integer.MAX_VALUE)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
     @Test
     public void delete() {
         User user = DomainUtil.createUser(userRepository);
@@ -194,4 +370,13 @@ public class UserIntegrationTest {
                 });
     }
 
-}
\ No newline at end of file
+    @Test
+    public void getClub_not_joined_then_404() {
+        User user = DomainUtil.createUser(userRepository);
+        this.client
+                .get()
+                .uri(String.format("/api/user/club/%s", user.getId()))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
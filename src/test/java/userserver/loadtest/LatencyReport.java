@@ -0,0 +1,70 @@
+package userserver.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * operation별 latency(HdrHistogram, microsecond)와 실패 수. 요청을 보내려던 시각부터 재서 밀린 시간(coordinated omission)도 들어간다.
+ */
+public class LatencyReport {
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> failures = new ConcurrentHashMap<>();
+
+    public void record(String operation, long nanos, boolean failed) {
+        long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_LATENCY_MICROS);
+        histograms.computeIfAbsent(operation, x -> new ConcurrentHistogram(MAX_LATENCY_MICROS, 3)).recordValue(micros);
+        if (failed) {
+            failures.computeIfAbsent(operation, x -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    public long count() {
+        return histograms.values().stream().mapToLong(Histogram::getTotalCount).sum();
+    }
+
+    public long failures() {
+        return failures.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    /**
+     * operation별 요약 한 줄씩과 전체 throughput.
+     */
+    public void print(PrintStream out, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("%-10s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "failed", "req/s", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+        new TreeMap<>(histograms).forEach((operation, histogram) -> out.printf("%-10s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                operation, histogram.getTotalCount(), failures.getOrDefault(operation, new AtomicLong()).get(),
+                histogram.getTotalCount() / seconds,
+                millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                histogram.getMaxValue() / 1000.0));
+        out.printf("total %d requests, %d failed, %.1f req/s over %.1fs%n", count(), failures(), count() / seconds, seconds);
+    }
+
+    /**
+     * operation마다 <dir>/<operation>.hgrm (HdrHistogram percentile distribution, millisecond).
+     */
+    public void write(File dir) throws FileNotFoundException {
+        dir.mkdirs();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            try (PrintStream out = new PrintStream(new File(dir, entry.getKey() + ".hgrm"))) {
+                entry.getValue().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,213 @@
+package userserver.loadtest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import userserver.domain.Club;
+import userserver.domain.User;
+import userserver.handler.model.ClubUserId;
+import userserver.handler.model.UserId;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 운영 규모의 data를 넣고 get/list/join/leave/save를 섞어서 정해진 rate로 보낸다. 결과는 HdrHistogram latency 요약과 throughput.
+ * gradle test에서는 빠지고 gradle loadTest로만 돈다. 설정은 -Ploadtest.users=1000000 처럼 넘긴다.
+ * - loadtest.users, loadtest.clubs: seed 할 수. 같은 수가 이미 있으면 다시 넣지 않는다
+ * - loadtest.rate: 초당 요청 수, loadtest.duration-seconds: 보내는 시간, loadtest.concurrency: 동시에 기다리는 요청 수
+ * - loadtest.warmup-seconds: 측정 전에 같은 workload를 기록 없이 보내는 시간
+ * - loadtest.max-error-rate: 5xx와 연결 실패 비율이 이보다 크면 실패
+ * operation별 percentile 분포는 build/loadtest/*.hgrm 으로 남는다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.data.mongodb.database=loadtest", "logging.level.org.springframework.data=error"})
+public class LoadTest {
+    private static final int USERS = Integer.getInteger("loadtest.users", 100_000);
+    private static final int CLUBS = Integer.getInteger("loadtest.clubs", 1_000);
+    private static final int RATE = Integer.getInteger("loadtest.rate", 500);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.duration-seconds", 30);
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmup-seconds", 10);
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 256);
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.01"));
+    private static final File REPORT_DIR = new File(System.getProperty("loadtest.report-dir", "build/loadtest"));
+
+    private static final Duration TICK = Duration.ofMillis(10);
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    @Autowired ReactiveMongoTemplate template;
+    @LocalServerPort private int port;
+
+    /**
+     * 보내는 비율(%)과 요청.
+     */
+    private enum Operation {
+        GET_USER(40) {
+            @Override
+            WebClient.RequestHeadersSpec<?> request(WebClient client) {
+                return client.get().uri("/api/user/{id}", userId(random(USERS)));
+            }
+        },
+        LIST(20) {
+            @Override
+            WebClient.RequestHeadersSpec<?> request(WebClient client) {
+                return client.get().uri("/api/user/list/{page}", random(100));
+            }
+        },
+        JOIN(15) {
+            @Override
+            WebClient.RequestHeadersSpec<?> request(WebClient client) {
+                return client.post().uri("/api/club/join")
+                        .syncBody(new ClubUserId(clubId(random(CLUBS)), userId(random(USERS))));
+            }
+        },
+        LEAVE(10) {
+            @Override
+            WebClient.RequestHeadersSpec<?> request(WebClient client) {
+                return client.post().uri("/api/club/leave").syncBody(new UserId(userId(random(USERS))));
+            }
+        },
+        SAVE(15) {
+            @Override
+            WebClient.RequestHeadersSpec<?> request(WebClient client) {
+                return client.post().uri("/api/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .syncBody(new User("loadtest", 20 + random(50), new Date()));
+            }
+        };
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+
+        abstract WebClient.RequestHeadersSpec<?> request(WebClient client);
+
+        static Operation next() {
+            int x = random(100);
+            for (Operation operation : values()) {
+                x -= operation.weight;
+                if (x < 0) {
+                    return operation;
+                }
+            }
+            return GET_USER;
+        }
+    }
+
+    @Test
+    public void mixedWorkload() throws Exception {
+        seed();
+        WebClient client = WebClient.create("http://localhost:" + port);
+        drive(client, new LatencyReport(), WARMUP_SECONDS);
+
+        LatencyReport report = new LatencyReport();
+        long start = System.nanoTime();
+        long total = drive(client, report, DURATION_SECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%nload test: users=%d clubs=%d rate=%d/s duration=%ds concurrency=%d%n",
+                USERS, CLUBS, RATE, DURATION_SECONDS, CONCURRENCY);
+        report.print(System.out, elapsed);
+        report.write(REPORT_DIR);
+
+        assertThat(report.count()).isEqualTo(total);
+        assertThat((double) report.failures() / report.count()).isLessThanOrEqualTo(MAX_ERROR_RATE);
+    }
+
+    /**
+     * i번째 요청은 start + i / RATE 초에 보낼 차례다. tick마다 그때까지 차례가 된 요청을 보낸다.
+     * @return 보낸 요청 수
+     */
+    private long drive(WebClient client, LatencyReport report, int seconds) {
+        long total = (long) RATE * seconds;
+        long ticks = TimeUnit.SECONDS.toMillis(seconds) / TICK.toMillis();
+        long start = System.nanoTime();
+        Flux.interval(TICK)
+                .take(ticks)
+                .onBackpressureBuffer()
+                .concatMap(tick -> Flux.fromStream(LongStream.range(tick * total / ticks, (tick + 1) * total / ticks).boxed()))
+                .map(i -> start + i * TimeUnit.SECONDS.toNanos(1) / RATE)
+                .flatMap(intended -> execute(client, Operation.next(), intended, report), CONCURRENCY)
+                .blockLast();
+        return total;
+    }
+
+    /**
+     * latency는 tick 시각(보내려던 시각)부터 잰다. 4xx(join 실패, 없는 user 등)는 정상 응답으로 본다.
+     */
+    private Mono<Void> execute(WebClient client, Operation operation, long intended, LatencyReport report) {
+        return operation.request(client)
+                .exchange()
+                .flatMap(response -> response.bodyToMono(Void.class).then(Mono.just(response.statusCode().is5xxServerError())))
+                .onErrorResume(e -> Mono.just(true))
+                .doOnNext(failed -> report.record(operation.name(), System.nanoTime() - intended, failed))
+                .then();
+    }
+
+    /**
+     * id를 순번으로 만들어서 넣는다. workload는 순번만 골라서 id를 다시 만든다.
+     */
+    private void seed() {
+        if (count(Club.class) != CLUBS) {
+            template.dropCollection(Club.class).block();
+            insert(Flux.range(0, CLUBS).map(x -> {
+                Club club = new Club("loadtest-" + x, 19 + x % 10, new Date());
+                club.setId(clubId(x));
+                return club;
+            }));
+        }
+        if (count(User.class) < USERS) {
+            template.dropCollection(User.class).block();
+            long now = System.currentTimeMillis();
+            insert(Flux.range(0, USERS).map(x -> {
+                User user = new User("loadtest-" + x, 20 + x % 50, new Date(now + x));
+                user.setId(userId(x));
+                return user;
+            }));
+        }
+    }
+
+    private long count(Class<?> type) {
+        return template.count(new Query(), type).block();
+    }
+
+    private <T> void insert(Flux<T> documents) {
+        long start = System.nanoTime();
+        long inserted = documents.buffer(SEED_BATCH_SIZE)
+                .flatMap(template::insertAll, 4)
+                .count()
+                .block();
+        System.out.printf("seeded %d documents in %dms%n", inserted, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static String userId(int i) {
+        return String.format("%024x", i);
+    }
+
+    private static String clubId(int i) {
+        return String.format("c%023x", i);
+    }
+
+    private static int random(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+}
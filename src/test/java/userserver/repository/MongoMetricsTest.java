@@ -0,0 +1,79 @@
+package userserver.repository;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.*;
+import com.mongodb.event.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MongoMetricsTest {
+    static final ServerId SERVER = new ServerId(new ClusterId(), new ServerAddress("localhost", 27017));
+    static final ConnectionDescription CONNECTION = new ConnectionDescription(SERVER);
+    MeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void command_timer_and_documents_by_collection() {
+        MongoCommandMetrics metrics = new MongoCommandMetrics(meterRegistry);
+        BsonDocument find = new BsonDocument("find", new BsonString("users"));
+        BsonDocument response = new BsonDocument("cursor", new BsonDocument("firstBatch",
+                new BsonArray(Arrays.asList(new BsonDocument(), new BsonDocument()))));
+
+        metrics.commandStarted(new CommandStartedEvent(1, CONNECTION, "test", "find", find));
+        metrics.commandSucceeded(new CommandSucceededEvent(1, CONNECTION, "find", response, 5_000_000));
+        metrics.commandStarted(new CommandStartedEvent(2, CONNECTION, "test", "update", new BsonDocument("update", new BsonString("clubs"))));
+        metrics.commandFailed(new CommandFailedEvent(2, CONNECTION, "update", 1_000_000, new RuntimeException()));
+
+        assertThat(meterRegistry.get("mongodb.command").tags("collection", "users", "command", "find", "status", "success").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("mongodb.command.documents").tags("collection", "users", "command", "find").summary().totalAmount()).isEqualTo(2);
+        assertThat(meterRegistry.get("mongodb.command").tags("collection", "clubs", "command", "update", "status", "failure").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void collection_and_documents_of_getMore_and_writes() {
+        BsonDocument getMore = new BsonDocument("getMore", new BsonInt32(1)).append("collection", new BsonString("users"));
+        assertThat(MongoCommandMetrics.collectionOf("getMore", getMore)).isEqualTo("users");
+        assertThat(MongoCommandMetrics.collectionOf("isMaster", new BsonDocument("isMaster", new BsonInt32(1)))).isEqualTo("none");
+        assertThat(MongoCommandMetrics.documentsOf(new BsonDocument("n", new BsonInt32(3)))).isEqualTo(3);
+    }
+
+    @Test
+    public void pool_gauges_and_wait_time() {
+        MongoPoolMetrics metrics = new MongoPoolMetrics(meterRegistry);
+        ConnectionId connection = CONNECTION.getConnectionId();
+        metrics.connectionPoolOpened(new ConnectionPoolOpenedEvent(SERVER, ConnectionPoolSettings.builder().maxSize(10).build()));
+        metrics.connectionAdded(new ConnectionAddedEvent(connection));
+        metrics.connectionAdded(new ConnectionAddedEvent(connection));
+        metrics.connectionCheckedOut(new ConnectionCheckedOutEvent(connection));
+        metrics.waitQueueEntered(new ConnectionPoolWaitQueueEnteredEvent(SERVER));
+
+        assertThat(gauge("mongodb.pool.max.size")).isEqualTo(10);
+        assertThat(gauge("mongodb.pool.size")).isEqualTo(2);
+        assertThat(gauge("mongodb.pool.checked.out")).isEqualTo(1);
+        assertThat(gauge("mongodb.pool.wait.queue.size")).isEqualTo(1);
+
+        metrics.waitQueueExited(new ConnectionPoolWaitQueueExitedEvent(SERVER));
+        metrics.connectionCheckedIn(new ConnectionCheckedInEvent(connection));
+        assertThat(gauge("mongodb.pool.wait.queue.size")).isEqualTo(0);
+        assertThat(gauge("mongodb.pool.checked.out")).isEqualTo(0);
+        assertThat(meterRegistry.get("mongodb.pool.wait").timer().count()).isEqualTo(1);
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("server", "localhost:27017").gauge().value();
+    }
+}
@@ -4,18 +4,36 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import userserver.configuration.RoutingConfiguration;
 import userserver.domain.User;
 import userserver.handler.ClubHandler;
+import userserver.handler.RouteMetrics;
+import userserver.handler.SlowRequestLog;
 import userserver.handler.UserHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.http.server.HttpServer;
 import userserver.model.TestModelFactory;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.web.reactive.function.BodyInserters.fromObject;
@@ -23,12 +41,14 @@ import static org.springframework.web.reactive.function.server.ServerResponse.cr
 import static org.springframework.web.reactive.function.server.ServerResponse.ok;
 
 @RunWith(SpringRunner.class)
-@Import(RoutingConfiguration.class)
+@Import({RoutingConfiguration.class, RouteMetrics.class, SlowRequestLog.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = "clubservice.slow-request.threshold-millis=500")
 public class RouterTest {
     @Autowired @Qualifier("userRouter") RouterFunction userRouter;
     @Autowired @Qualifier("clubRouter") RouterFunction clubRouter;
     @MockBean UserHandler userHandler;
     @MockBean ClubHandler clubHandler;
+    @Autowired MeterRegistry meterRegistry;
     private WebTestClient testClient;
 
     @Before
@@ -62,6 +82,89 @@ public class RouterTest {
         this.testClient.get().uri("/api/user").exchange().expectStatus().isNotFound();
     }
 
+    @Test
+    public void routeMetrics() throws InterruptedException {
+        given(userHandler.get(any())).willReturn(ok().build());
+        given(clubHandler.get(any())).willReturn(ServerResponse.notFound().build());
+        long requests = timerCount("user.get");
+        double notFound = notFoundCount();
+
+        this.testClient.get().uri("/api/user/userid").exchange().expectStatus().isOk();
+        this.testClient.get().uri("/api/club/clubid").exchange().expectStatus().isNotFound();
+
+        await(() -> timerCount("user.get") == requests + 1 && notFoundCount() == notFound + 1);
+        assertThat(meterRegistry.get("http.route.in.flight").tag("route", "user.get").gauge().value()).isEqualTo(0);
+    }
+
+    /**
+     * bindToRouterFunction의 mock response는 body를 다 쓰기 전에 writeTo를 끝내서, 실제 서버에 띄워서 잰다.
+     */
+    @Test
+    public void routeMetrics_include_body_write_time() throws InterruptedException {
+        given(userHandler.getByIds(any())).willReturn(ok().body(
+                Flux.just("a", "b", "c").delayElements(Duration.ofMillis(200)), String.class));
+        long requests = timerCount("user.get_by_ids");
+        double totalMillis = requests == 0 ? 0 : timer("user.get_by_ids").totalTime(TimeUnit.MILLISECONDS);
+        NettyContext server = HttpServer.create("localhost", 0)
+                .newHandler(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(userRouter.and(clubRouter))))
+                .block();
+        try {
+            WebTestClient.bindToServer().baseUrl("http://localhost:" + server.address().getPort()).build()
+                    .get().uri("/api/user?ids=a,b").exchange().expectStatus().isOk()
+                    .expectBody(String.class).isEqualTo("abc");
+        } finally {
+            server.dispose();
+        }
+
+        await(() -> timerCount("user.get_by_ids") == requests + 1);
+        assertThat(timer("user.get_by_ids").totalTime(TimeUnit.MILLISECONDS) - totalMillis).isGreaterThanOrEqualTo(600);
+        assertThat(meterRegistry.get("http.route.in.flight").tag("route", "user.get_by_ids").gauge().value()).isEqualTo(0);
+    }
+
+    private Timer timer(String route) {
+        return meterRegistry.get("http.route.requests").tag("route", route).timer();
+    }
+
+    private long timerCount(String route) {
+        Timer timer = meterRegistry.find("http.route.requests").tag("route", route).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private double notFoundCount() {
+        Counter counter = meterRegistry.find("http.route.responses").tag("route", "club.get").tag("status", "404").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    /**
+     * response를 다 쓰고 나서 남기므로 client가 응답을 받은 뒤에 남을 수 있다.
+     */
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 50 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(20);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    @Test
+    public void patchUserAndClub() {
+        given(userHandler.patch(any())).willReturn(ok().build());
+        given(clubHandler.patch(any())).willReturn(ok().build());
+        this.testClient.patch().uri("/api/user/userid").body(fromObject(TestModelFactory.createUser())).exchange().expectStatus().isOk();
+        this.testClient.patch().uri("/api/club/clubid").body(fromObject(TestModelFactory.createClub())).exchange().expectStatus().isOk();
+    }
+
+    @Test
+    public void getUsersByIds() {
+        given(userHandler.getByIds(any())).willReturn(ok().build());
+        given(userHandler.batchGet(any())).willReturn(ok().build());
+        given(clubHandler.getByIds(any())).willReturn(ok().build());
+        given(clubHandler.batchGet(any())).willReturn(ok().build());
+        this.testClient.get().uri("/api/user?ids=a,b").exchange().expectStatus().isOk();
+        this.testClient.post().uri("/api/user/batch-get").exchange().expectStatus().isOk();
+        this.testClient.get().uri("/api/club?ids=a,b").exchange().expectStatus().isOk();
+        this.testClient.post().uri("/api/club/batch-get").exchange().expectStatus().isOk();
+    }
+
     @Test
     public void deleteUser() {
         given(userHandler.delete(any())).willReturn(ok().build());
@@ -117,5 +220,18 @@ public class RouterTest {
         this.testClient.post().uri("/api/club/leave").exchange().expectStatus().isOk();
     }
 
-}
+    @Test
+    public void joinAndLeaveBatch() {
+        given(clubHandler.joinBatch(any())).willReturn(ok().build());
+        given(clubHandler.leaveBatch(any())).willReturn(ok().build());
+        this.testClient.post().uri("/api/club/join/batch").exchange().expectStatus().isOk();
+        this.testClient.post().uri("/api/club/leave/batch").exchange().expectStatus().isOk();
+    }
 
+    @Test
+    public void getClubMembers() {
+        given(clubHandler.getMembers(any())).willReturn(ok().build());
+        this.testClient.get().uri("/api/club/clubid/members").exchange().expectStatus().isOk();
+    }
+
+}
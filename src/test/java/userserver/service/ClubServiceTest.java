@@ -1,5 +1,6 @@
 package userserver.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -9,15 +10,27 @@ import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import userserver.cache.CacheInvalidationBus;
+import userserver.cache.ClubCache;
 import userserver.domain.Club;
 import userserver.domain.User;
 import userserver.enums.JoinResult;
+import userserver.handler.model.ClubUserId;
+import userserver.handler.model.ClubUserResult;
 import userserver.model.TestModelFactory;
 import userserver.repository.ClubRepository;
+import userserver.repository.Cursor;
 import userserver.repository.UserRepository;
 import userserver.util.DomainUtil;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -34,7 +47,7 @@ public class ClubServiceTest {
 
     @Before
     public void setUp() {
-        this.clubService = new ClubService(clubRepository, userRepository, pageSize);
+        this.clubService = new ClubService(clubRepository, userRepository, new ClubCache(clubRepository, new SimpleMeterRegistry(), new CacheInvalidationBus(mongoTemplate, false, 0, 0, 0), 100, 60), new WriteCoalescing(new SimpleMeterRegistry(), false, 0, 0), pageSize);
         clubRepository.deleteAll().block();
         userRepository.deleteAll().block();
     }
@@ -52,6 +65,39 @@ public class ClubServiceTest {
         assertThat(count).isEqualTo(pageSize);
     }
 
+    @Test
+    public void getList_cursor() {
+        List<Club> clubs = DomainUtil.createClubs(clubRepository);
+        clubs.sort(Comparator.comparing(Club::getCreateDate));
+        List<Club> first = clubService.getList((Cursor) null).collectList().block();
+        Club last = first.get(first.size() - 1);
+        List<Club> second = clubService.getList(new Cursor(last.getCreateDate(), last.getId())).collectList().block();
+
+        assertThat(first).isEqualTo(clubs.subList(0, pageSize));
+        assertThat(second).isEqualTo(clubs.subList(pageSize, pageSize * 2));
+    }
+
+    @Test
+    public void getMembers() {
+        Club club = DomainUtil.createClub(clubRepository);
+        List<User> users = DomainUtil.createUsers(userRepository).stream()
+                .filter(x -> x.getAge() >= club.getMinAgeForJoin())
+                .sorted(Comparator.comparing(User::getCreateDate))
+                .limit(15)
+                .collect(toList());
+        users.forEach(x -> clubService.join(club.getId(), x.getId()).block());
+
+        List<User> first = clubService.getMembers(club.getId(), null).collectList().block();
+        User last = first.get(first.size() - 1);
+        List<User> second = clubService.getMembers(club.getId(), new Cursor(last.getCreateDate(), last.getId())).collectList().block();
+
+        assertThat(first).isEqualTo(users.subList(0, pageSize));
+        assertThat(second).isEqualTo(users.subList(pageSize, users.size()));
+        assertThat(first.get(0).getName()).isEqualTo(users.get(0).getName());
+        assertThat(first.get(0).getClubId()).isNull();
+        assertThat(clubService.getAllMembers(club.getId(), null).count().block()).isEqualTo(users.size());
+    }
+
     @Test
     public void getClub() {
         Club club = DomainUtil.createClub(clubRepository);
@@ -59,13 +105,31 @@ public class ClubServiceTest {
         assertThat(result).isNotNull();
     }
 
+    @Test
+    public void patch_evicts_cache() {
+        Club club = DomainUtil.createClub(clubRepository);
+        clubRepository.incrementMemberCount(club.getId(), 2).block();
+        clubService.get(club.getId()).block();
+        Club changes = new Club();
+        changes.setMaxMembers(10);
+
+        assertThat(clubService.patch(club.getId(), changes).block()).isEqualTo(1);
+        Club patched = clubService.get(club.getId()).block();
+        assertThat(patched.getMaxMembers()).isEqualTo(10);
+        assertThat(patched.getName()).isEqualTo(club.getName());
+        assertThat(patched.getMemberCount()).isEqualTo(2);
+    }
+
     @Test
     public void delete() {
         Club club = DomainUtil.createClub(clubRepository);
-        clubService.delete(club.getId()).block();
+        Long deleted = clubService.delete(club.getId()).block();
+        Long deletedAgain = clubService.delete(club.getId()).block();
 
         Club result = clubService.get(club.getId()).block();
         assertThat(result).isNull();
+        assertThat(deleted).isEqualTo(1);
+        assertThat(deletedAgain).isEqualTo(0);
     }
 
     @Test
@@ -110,6 +174,144 @@ public class ClubServiceTest {
         assertThat(joinResult).isEqualTo(JoinResult.SUCCESS);
     }
 
+    @Test
+    public void join_fail_not_allow_age_saved() {
+        Club club = TestModelFactory.createClub();
+        club.setMinAgeForJoin(100);
+        clubRepository.save(club).block();
+        User user = DomainUtil.createUser(userRepository);
+        JoinResult joinResult = clubService.join(club.getId(), user.getId()).block();
+        assertThat(joinResult).isEqualTo(JoinResult.FAIL_NOT_ALLOW_AGE);
+    }
+
+    @Test
+    public void join_fail_not_allow_age_releases_seat() {
+        Club club = TestModelFactory.createClub();
+        club.setMinAgeForJoin(100);
+        club.setMaxMembers(1);
+        clubRepository.save(club).block();
+        User user = DomainUtil.createUser(userRepository);
+        assertThat(clubService.join(club.getId(), user.getId()).block()).isEqualTo(JoinResult.FAIL_NOT_ALLOW_AGE);
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void join_fail_club_is_full() {
+        Club club = TestModelFactory.createClub();
+        club.setMaxMembers(1);
+        clubRepository.save(club).block();
+        User user1 = DomainUtil.createUser(userRepository);
+        User user2 = DomainUtil.createUser(userRepository);
+        assertThat(clubService.join(club.getId(), user1.getId()).block()).isEqualTo(JoinResult.SUCCESS);
+        assertThat(clubService.join(club.getId(), user2.getId()).block()).isEqualTo(JoinResult.FAIL_CLUB_IS_FULL);
+
+        clubService.leave(user1.getId()).block();
+        assertThat(clubService.join(club.getId(), user2.getId()).block()).isEqualTo(JoinResult.SUCCESS);
+    }
+
+    /**
+     * 가입할 수 없는 user는 자리를 잡지 않는다. 꽉 찬 club이어도 FULL이 아니라 원래 이유로 실패한다.
+     */
+    @Test
+    public void join_ineligible_user_then_no_seat_reserved() {
+        Club club = TestModelFactory.createClub();
+        club.setMinAgeForJoin(20);
+        club.setMaxMembers(1);
+        clubRepository.save(club).block();
+        User member = DomainUtil.createUser(userRepository);
+        User young = TestModelFactory.createUser();
+        young.setAge(10);
+        userRepository.save(young).block();
+        AtomicInteger reserves = new AtomicInteger();
+        ClubService service = serviceCountingReserves(reserves);
+
+        assertThat(service.join(club.getId(), young.getId()).block()).isEqualTo(JoinResult.FAIL_NOT_ALLOW_AGE);
+        assertThat(service.join(club.getId(), member.getId()).block()).isEqualTo(JoinResult.SUCCESS);
+        assertThat(service.join(club.getId(), member.getId()).block()).isEqualTo(JoinResult.FAIL_CLUB_IS_JOINED);
+        assertThat(service.join(club.getId(), young.getId()).block()).isEqualTo(JoinResult.FAIL_NOT_ALLOW_AGE);
+        assertThat(reserves.get()).isEqualTo(1);
+    }
+
+    /**
+     * maxMembers가 그대로면 club을 다시 읽어도 자리 잡기를 다시 하지 않는다.
+     */
+    @Test
+    public void join_full_club_then_reserve_once() {
+        Club club = TestModelFactory.createClub();
+        club.setMaxMembers(1);
+        clubRepository.save(club).block();
+        User user1 = DomainUtil.createUser(userRepository);
+        User user2 = DomainUtil.createUser(userRepository);
+        AtomicInteger reserves = new AtomicInteger();
+        ClubService service = serviceCountingReserves(reserves);
+        service.join(club.getId(), user1.getId()).block();
+        reserves.set(0);
+
+        assertThat(service.join(club.getId(), user2.getId()).block()).isEqualTo(JoinResult.FAIL_CLUB_IS_FULL);
+        assertThat(reserves.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void join_reloads_changed_max_members() {
+        Club club = TestModelFactory.createClub();
+        club.setMaxMembers(1);
+        clubRepository.save(club).block();
+        User user1 = DomainUtil.createUser(userRepository);
+        User user2 = DomainUtil.createUser(userRepository);
+        clubService.join(club.getId(), user1.getId()).block();
+
+        // 다른 node에서 maxMembers를 올렸지만 이 node의 cache는 아직 1
+        club.setMaxMembers(2);
+        clubRepository.saveDetails(club).block();
+        assertThat(clubService.join(club.getId(), user2.getId()).block()).isEqualTo(JoinResult.SUCCESS);
+        assertThat(clubService.get(club.getId()).block().getMaxMembers()).isEqualTo(2);
+    }
+
+    @Test
+    public void join_concurrent_never_exceeds_max_members() {
+        int maxMembers = 50;
+        int userCount = 400;
+        Club club = TestModelFactory.createClub();
+        club.setMaxMembers(maxMembers);
+        clubRepository.save(club).block();
+        List<User> users = Flux.range(0, userCount)
+                .map(x -> TestModelFactory.createUser())
+                .as(userRepository::saveAll)
+                .collectList()
+                .block();
+
+        List<JoinResult> results = Flux.fromIterable(users)
+                .flatMap(x -> clubService.join(club.getId(), x.getId()).subscribeOn(Schedulers.parallel()), userCount)
+                .collectList()
+                .block();
+
+        assertThat(results.stream().filter(x -> x == JoinResult.SUCCESS).count()).isEqualTo(maxMembers);
+        assertThat(results.stream().filter(x -> x == JoinResult.FAIL_CLUB_IS_FULL).count()).isEqualTo(userCount - maxMembers);
+        assertThat(userRepository.findByClubId(club.getId()).count().block()).isEqualTo(maxMembers);
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(maxMembers);
+    }
+
+    @Test
+    public void join_not_found() {
+        Club club = DomainUtil.createClub(clubRepository);
+        assertThat(clubService.join(club.getId(), "unknown").block()).isEqualTo(JoinResult.NOT_FOUND);
+        assertThat(clubService.join("unknown", "unknown").block()).isEqualTo(JoinResult.NOT_FOUND);
+    }
+
+    @Test
+    public void join_concurrent_same_user_only_one_success() {
+        User user = DomainUtil.createUser(userRepository);
+        List<Club> clubs = DomainUtil.createClubs(clubRepository).stream()
+                .filter(x -> x.getMinAgeForJoin() <= user.getAge())
+                .collect(toList());
+        List<JoinResult> results = Flux.fromIterable(clubs)
+                .flatMap(x -> clubService.join(x.getId(), user.getId()).subscribeOn(Schedulers.parallel()))
+                .collectList()
+                .block();
+        assertThat(results.stream().filter(x -> x == JoinResult.SUCCESS).count()).isEqualTo(1);
+        assertThat(results.stream().filter(x -> x == JoinResult.FAIL_CLUB_IS_JOINED).count()).isEqualTo(clubs.size() - 1);
+    }
+
     @Test
     public void leave() {
         Club club = DomainUtil.createClub(clubRepository);
@@ -126,4 +328,224 @@ public class ClubServiceTest {
         assertThat(results.size()).isEqualTo(1);
         assertThat(results.get(0)).isEqualTo(user2);
     }
+
+    @Test
+    public void join_leave_member_count() {
+        Club club = DomainUtil.createClub(clubRepository);
+        User user1 = DomainUtil.createUser(userRepository);
+        User user2 = DomainUtil.createUser(userRepository);
+
+        clubService.join(club.getId(), user1.getId()).block();
+        clubService.join(club.getId(), user2.getId()).block();
+        clubService.join(club.getId(), user2.getId()).block();
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(2);
+        assertThat(clubService.get(club.getId()).block().getMemberCount()).isEqualTo(2);
+
+        clubService.leave(user1.getId()).block();
+        clubService.leave(user1.getId()).block();
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void save_keeps_member_count() {
+        Club club = DomainUtil.createClub(clubRepository);
+        User user = DomainUtil.createUser(userRepository);
+        clubService.join(club.getId(), user.getId()).block();
+
+        club.setName("renamed");
+        club.setMemberCount(100);
+        Club saved = clubService.save(club).block();
+        assertThat(saved.getName()).isEqualTo("renamed");
+        assertThat(saved.getMemberCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void joinAll() {
+        Club club = TestModelFactory.createClub();
+        club.setMaxMembers(2);
+        clubRepository.save(club).block();
+        Club adults = TestModelFactory.createClub();
+        adults.setMinAgeForJoin(30);
+        clubRepository.save(adults).block();
+        List<User> users = Flux.range(0, 4)
+                .map(x -> TestModelFactory.createUser())
+                .as(userRepository::saveAll)
+                .collectList()
+                .block();
+
+        List<JoinResult> results = clubService.joinAll(Flux.just(
+                new ClubUserId(club.getId(), users.get(0).getId()),
+                new ClubUserId(adults.getId(), users.get(1).getId()),
+                new ClubUserId("unknown", users.get(1).getId()),
+                new ClubUserId(club.getId(), "unknown"),
+                new ClubUserId(club.getId(), users.get(0).getId()),
+                new ClubUserId(club.getId(), users.get(2).getId()),
+                new ClubUserId(club.getId(), users.get(3).getId())))
+                .map(ClubUserResult::getResult)
+                .collectList()
+                .block();
+
+        assertThat(results).containsExactly(JoinResult.SUCCESS, JoinResult.FAIL_NOT_ALLOW_AGE, JoinResult.NOT_FOUND,
+                JoinResult.NOT_FOUND, JoinResult.FAIL_CLUB_IS_JOINED, JoinResult.SUCCESS, JoinResult.FAIL_CLUB_IS_FULL);
+        assertThat(userRepository.findByClubId(club.getId()).count().block()).isEqualTo(2);
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(2);
+        assertThat(clubRepository.findById(adults.getId()).block().getMemberCount()).isEqualTo(0);
+    }
+
+    /**
+     * 나이 때문에 실패한 pair는 user를 차지하지 않는다. 같은 user의 다음 pair로 가입할 수 있어야 한다.
+     */
+    @Test
+    public void joinAll_not_allow_age_then_next_pair_joins() {
+        Club adults = TestModelFactory.createClub();
+        adults.setMinAgeForJoin(30);
+        clubRepository.save(adults).block();
+        Club club = DomainUtil.createClub(clubRepository);
+        User user = DomainUtil.createUser(userRepository);
+
+        List<JoinResult> results = clubService.joinAll(Flux.just(
+                new ClubUserId(adults.getId(), user.getId()),
+                new ClubUserId(club.getId(), user.getId())))
+                .map(ClubUserResult::getResult)
+                .collectList()
+                .block();
+
+        assertThat(results).containsExactly(JoinResult.FAIL_NOT_ALLOW_AGE, JoinResult.SUCCESS);
+        assertThat(userRepository.findById(user.getId()).block().getClubId()).isEqualTo(club.getId());
+    }
+
+    /**
+     * bulkWrite 직전에 user가 지워지면 다시 읽은 결과가 비어 있다. 전부 가입된 것으로 보면 안 되고, 잡은 자리는 돌려준다.
+     */
+    @Test
+    public void joinAll_users_deleted_concurrently_then_not_found_and_seats_released() {
+        Club club = DomainUtil.createClub(clubRepository);
+        User user1 = DomainUtil.createUser(userRepository);
+        User user2 = DomainUtil.createUser(userRepository);
+        ClubService service = service(clubRepository, intercept(UserRepository.class, userRepository, "joinClubs",
+                args -> userRepository.deleteAll().then(userRepository.joinClubs((Map<Club, List<String>>) args[0]))));
+
+        List<JoinResult> results = service.joinAll(Flux.just(new ClubUserId(club.getId(), user1.getId()), new ClubUserId(club.getId(), user2.getId())))
+                .map(ClubUserResult::getResult)
+                .collectList()
+                .block();
+
+        assertThat(results).containsExactly(JoinResult.NOT_FOUND, JoinResult.NOT_FOUND);
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void leaveAll_users_deleted_concurrently_then_not_found() {
+        Club club = DomainUtil.createClub(clubRepository);
+        User user = DomainUtil.createUser(userRepository);
+        clubService.join(club.getId(), user.getId()).block();
+        ClubService service = service(clubRepository, intercept(UserRepository.class, userRepository, "leaveClubs",
+                args -> userRepository.deleteAll().then(userRepository.leaveClubs((Map<String, List<String>>) args[0]))));
+
+        List<JoinResult> results = service.leaveAll(Flux.just(new ClubUserId(club.getId(), user.getId())))
+                .map(ClubUserResult::getResult)
+                .collectList()
+                .block();
+
+        assertThat(results).containsExactly(JoinResult.NOT_FOUND);
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(1);
+    }
+
+    /**
+     * 다시 읽은 뒤에도 다른 요청에 자리를 뺏기면 자리가 남아 있는 동안은 다시 시도한다. (FULL이 아님)
+     */
+    @Test
+    public void joinAll_lost_reserve_race_then_retry() {
+        Club club = TestModelFactory.createClub();
+        club.setMaxMembers(10);
+        clubRepository.save(club).block();
+        User user = DomainUtil.createUser(userRepository);
+        AtomicInteger calls = new AtomicInteger();
+        ClubService service = service(intercept(ClubRepository.class, clubRepository, "reserveSeats", args -> calls.incrementAndGet() <= 3
+                ? Mono.empty()
+                : clubRepository.reserveSeats((String) args[0], (Integer) args[1], (Integer) args[2])), userRepository);
+
+        List<JoinResult> results = service.joinAll(Flux.just(new ClubUserId(club.getId(), user.getId())))
+                .map(ClubUserResult::getResult)
+                .collectList()
+                .block();
+
+        assertThat(results).containsExactly(JoinResult.SUCCESS);
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void leaveAll() {
+        Club club = DomainUtil.createClub(clubRepository);
+        User user1 = DomainUtil.createUser(userRepository);
+        User user2 = DomainUtil.createUser(userRepository);
+        clubService.join(club.getId(), user1.getId()).block();
+
+        List<JoinResult> results = clubService.leaveAll(Flux.just(
+                new ClubUserId(club.getId(), user1.getId()),
+                new ClubUserId(club.getId(), user2.getId()),
+                new ClubUserId(club.getId(), user1.getId())))
+                .map(ClubUserResult::getResult)
+                .collectList()
+                .block();
+
+        assertThat(results).containsExactly(JoinResult.SUCCESS, JoinResult.NOT_FOUND, JoinResult.NOT_FOUND);
+        assertThat(userRepository.findByClubId(club.getId()).count().block()).isEqualTo(0);
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void save_coalesced_keeps_member_count() {
+        WriteCoalescing writeCoalescing = new WriteCoalescing(new SimpleMeterRegistry(), true, 20, 256);
+        ClubService coalesced = new ClubService(clubRepository, userRepository, new ClubCache(clubRepository, new SimpleMeterRegistry(), new CacheInvalidationBus(mongoTemplate, false, 0, 0, 0), 100, 60), writeCoalescing, pageSize);
+        Club club = DomainUtil.createClub(clubRepository);
+        clubRepository.incrementMemberCount(club.getId(), 3).block();
+        club.setName("renamed");
+        try {
+            List<Club> saved = Flux.just(club, TestModelFactory.createClub())
+                    .flatMap(coalesced::save)
+                    .collectList()
+                    .block();
+
+            assertThat(saved).allMatch(x -> x.getId() != null);
+            assertThat(clubRepository.findById(club.getId()).block().getName()).isEqualTo("renamed");
+            assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(3);
+            assertThat(clubRepository.count().block()).isEqualTo(2);
+        } finally {
+            writeCoalescing.stop();
+        }
+    }
+
+    @Test
+    public void leave_unknown_user() {
+        assertThat(clubService.leave("unknown").block()).isEqualTo(0);
+    }
+
+    private ClubService serviceCountingReserves(AtomicInteger reserves) {
+        return service(intercept(ClubRepository.class, clubRepository, "reserveSeats", args -> {
+            reserves.incrementAndGet();
+            return clubRepository.reserveSeats((String) args[0], (Integer) args[1], (Integer) args[2]);
+        }), userRepository);
+    }
+
+    private ClubService service(ClubRepository clubs, UserRepository users) {
+        return new ClubService(clubs, users, new ClubCache(clubs, new SimpleMeterRegistry(), new CacheInvalidationBus(mongoTemplate, false, 0, 0, 0), 100, 60), new WriteCoalescing(new SimpleMeterRegistry(), false, 0, 0), pageSize);
+    }
+
+    /**
+     * methodName 호출만 replacement로 바꾸고 나머지는 target에 넘긴다.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T intercept(Class<T> type, T target, String methodName, Function<Object[], Object> replacement) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            if (method.getName().equals(methodName)) {
+                return replacement.apply(args);
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
 }
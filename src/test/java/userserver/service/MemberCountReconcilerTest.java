@@ -0,0 +1,95 @@
+package userserver.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import userserver.domain.Club;
+import userserver.domain.User;
+import userserver.repository.ClubRepository;
+import userserver.repository.UserRepository;
+import userserver.util.DomainUtil;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@DataMongoTest
+@TestPropertySource("classpath:application.properties")
+public class MemberCountReconcilerTest {
+    @Autowired ClubRepository clubRepository;
+    @Autowired UserRepository userRepository;
+    MemberCountReconciler reconciler;
+
+    @Before
+    public void setUp() {
+        this.reconciler = new MemberCountReconciler(clubRepository, userRepository, 0);
+        clubRepository.deleteAll().block();
+        userRepository.deleteAll().block();
+    }
+
+    @Test
+    public void reconcile() {
+        Club drifted = DomainUtil.createClub(clubRepository);
+        Club empty = DomainUtil.createClub(clubRepository);
+        Club correct = DomainUtil.createClub(clubRepository);
+        User user1 = DomainUtil.createUser(userRepository);
+        User user2 = DomainUtil.createUser(userRepository);
+        User user3 = DomainUtil.createUser(userRepository);
+        userRepository.joinClub(user1.getId(), drifted.getId(), 0).block();
+        userRepository.joinClub(user2.getId(), drifted.getId(), 0).block();
+        userRepository.joinClub(user3.getId(), correct.getId(), 0).block();
+        clubRepository.incrementMemberCount(empty.getId(), 3).block();
+        clubRepository.incrementMemberCount(correct.getId(), 1).block();
+
+        assertThat(reconciler.reconcile().block()).isEqualTo(2);
+        assertThat(clubRepository.findById(drifted.getId()).block().getMemberCount()).isEqualTo(2);
+        assertThat(clubRepository.findById(empty.getId()).block().getMemberCount()).isEqualTo(0);
+        assertThat(clubRepository.findById(correct.getId()).block().getMemberCount()).isEqualTo(1);
+        assertThat(reconciler.reconcile().block()).isEqualTo(0);
+    }
+
+    /**
+     * join은 자리를 먼저 $inc 하고 나서 user를 바꾼다. 그 사이에 센 값으로 고치면 안 된다.
+     */
+    @Test
+    public void reconcile_during_join_then_not_repaired() throws InterruptedException {
+        Club club = DomainUtil.createClub(clubRepository);
+        User user = DomainUtil.createUser(userRepository);
+        clubRepository.incrementMemberCount(club.getId(), 1).block();
+
+        CompletableFuture<Long> repaired = slowReconciler().reconcile().toFuture();
+        Thread.sleep(300);
+        userRepository.joinClub(user.getId(), club.getId(), 0).block();
+
+        assertThat(repaired.join()).isEqualTo(0);
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(1);
+    }
+
+    /**
+     * leave는 user를 먼저 바꾸고 나서 $inc -1 한다.
+     */
+    @Test
+    public void reconcile_during_leave_then_not_repaired() throws InterruptedException {
+        Club club = DomainUtil.createClub(clubRepository);
+        User user = DomainUtil.createUser(userRepository);
+        userRepository.joinClub(user.getId(), club.getId(), 0).block();
+        clubRepository.incrementMemberCount(club.getId(), 1).block();
+        userRepository.leaveClub(user.getId()).block();
+
+        CompletableFuture<Long> repaired = slowReconciler().reconcile().toFuture();
+        Thread.sleep(300);
+        clubRepository.incrementMemberCount(club.getId(), -1).block();
+
+        assertThat(repaired.join()).isEqualTo(0);
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(0);
+    }
+
+    private MemberCountReconciler slowReconciler() {
+        return new MemberCountReconciler(clubRepository, userRepository, 1000);
+    }
+}
@@ -1,22 +1,33 @@
 package userserver.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.test.context.TestPropertySource;
+import userserver.cache.CacheInvalidationBus;
+import userserver.cache.ClubCache;
 import userserver.domain.Club;
 import userserver.domain.User;
 import userserver.model.TestModelFactory;
 import userserver.repository.ClubRepository;
+import userserver.repository.Cursor;
 import userserver.repository.UserRepository;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import userserver.util.DomainUtil;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.stream.IntStream;
 
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @RunWith(SpringRunner.class)
@@ -26,11 +37,12 @@ public class UserServiceTest {
     UserService userService;
     @Autowired UserRepository userRepository;
     @Autowired ClubRepository clubRepository;
+    @Autowired ReactiveMongoTemplate mongoTemplate;
     @Value("${clubservice.paging-size}") int pageSize;
 
     @Before
     public void setUp() {
-        this.userService = new UserService(userRepository, clubRepository, pageSize);
+        this.userService = new UserService(userRepository, clubRepository, new ClubCache(clubRepository, new SimpleMeterRegistry(), new CacheInvalidationBus(mongoTemplate, false, 0, 0, 0), 100, 60), new SimpleMeterRegistry(), new WriteCoalescing(new SimpleMeterRegistry(), false, 0, 0), pageSize);
         userRepository.deleteAll().block();
     }
 
@@ -40,6 +52,75 @@ public class UserServiceTest {
         assertThat(user.getId()).isNotBlank();
     }
 
+    /**
+     * PUT은 clubId를 바꾸지 않는다. 가입/탈퇴는 join/leave로만.
+     */
+    @Test
+    public void save_keeps_membership() {
+        Club club = DomainUtil.createClub(clubRepository);
+        User member = DomainUtil.createUser(userRepository);
+        userRepository.joinClub(member.getId(), club.getId(), 0).block();
+        User put = TestModelFactory.createUser();
+        put.setId(member.getId());
+        put.setName("modify name");
+        User newcomer = TestModelFactory.createUser();
+        newcomer.setClubId(club.getId());
+
+        User saved = userService.save(put).block();
+        User inserted = userService.save(newcomer).block();
+
+        assertThat(saved.getName()).isEqualTo("modify name");
+        assertThat(saved.getClubId()).isEqualTo(club.getId());
+        assertThat(userRepository.findById(member.getId()).block().getClubId()).isEqualTo(club.getId());
+        assertThat(userRepository.findById(inserted.getId()).block().getClubId()).isNull();
+    }
+
+    @Test
+    public void save_coalesced_keeps_membership() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WriteCoalescing writeCoalescing = new WriteCoalescing(meterRegistry, true, 20, 256);
+        UserService coalesced = new UserService(userRepository, clubRepository, new ClubCache(clubRepository, new SimpleMeterRegistry(), new CacheInvalidationBus(mongoTemplate, false, 0, 0, 0), 100, 60), meterRegistry, writeCoalescing, pageSize);
+        Club club = DomainUtil.createClub(clubRepository);
+        User member = DomainUtil.createUser(userRepository);
+        userRepository.joinClub(member.getId(), club.getId(), 0).block();
+        User put = TestModelFactory.createUser();
+        put.setId(member.getId());
+        User newcomer = TestModelFactory.createUser();
+        newcomer.setClubId(club.getId());
+        try {
+            Flux.just(put, newcomer).flatMap(coalesced::save).blockLast();
+
+            assertThat(userRepository.findById(member.getId()).block().getClubId()).isEqualTo(club.getId());
+            assertThat(userRepository.findById(newcomer.getId()).block().getClubId()).isNull();
+        } finally {
+            writeCoalescing.stop();
+        }
+    }
+
+    @Test
+    public void save_coalesced() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WriteCoalescing writeCoalescing = new WriteCoalescing(meterRegistry, true, 20, 256);
+        UserService coalesced = new UserService(userRepository, clubRepository, new ClubCache(clubRepository, new SimpleMeterRegistry(), new CacheInvalidationBus(mongoTemplate, false, 0, 0, 0), 100, 60), meterRegistry, writeCoalescing, pageSize);
+        User existing = DomainUtil.createUser(userRepository);
+        existing.setName("modify name");
+        try {
+            List<User> saved = Flux.range(0, 30)
+                    .map(x -> TestModelFactory.createUser())
+                    .concatWith(Mono.just(existing))
+                    .flatMap(coalesced::save)
+                    .collectList()
+                    .block();
+
+            assertThat(saved).hasSize(31).allMatch(x -> x.getId() != null);
+            assertThat(userRepository.count().block()).isEqualTo(31);
+            assertThat(userRepository.findById(existing.getId()).block().getName()).isEqualTo("modify name");
+            assertThat(meterRegistry.get("writecoalescer.batch.size").summary().count()).isLessThan(31);
+        } finally {
+            writeCoalescing.stop();
+        }
+    }
+
     @Test
     public void getUserList() {
         DomainUtil.createUsers(userRepository);
@@ -52,6 +133,26 @@ public class UserServiceTest {
         assertThat(sumOfAge).isEqualTo(respectSumOfAge);
     }
 
+    @Test
+    public void getUserList_cursor() {
+        List<User> users = DomainUtil.createUsers(userRepository);
+        List<User> results = new ArrayList<>();
+        Cursor cursor = null;
+        List<User> page;
+        do {
+            page = userService.getList(cursor).collectList().block();
+            results.addAll(page);
+            if (!page.isEmpty()) {
+                User last = page.get(page.size() - 1);
+                cursor = new Cursor(last.getCreateDate(), last.getId());
+            }
+        } while (!page.isEmpty());
+
+        assertThat(results).hasSize(users.size());
+        assertThat(results.stream().map(User::getAge).collect(toList()))
+                .isEqualTo(IntStream.range(0, users.size()).boxed().collect(toList()));
+    }
+
     @Test
     public void getUser() {
         User user = DomainUtil.createUser(userRepository);
@@ -59,13 +160,47 @@ public class UserServiceTest {
         assertThat(resultUser).isNotNull();
     }
 
+    @Test
+    public void getByIds_in_request_order() {
+        List<User> users = DomainUtil.createUsers(userRepository);
+        List<String> ids = Arrays.asList(users.get(2).getId(), "unknown", users.get(0).getId(), users.get(2).getId());
+
+        assertThat(userService.getByIds(ids).collectList().block()).containsExactly(users.get(2), users.get(0), users.get(2));
+    }
+
+    @Test
+    public void patch() {
+        User user = DomainUtil.createUser(userRepository);
+        User changes = new User();
+        changes.setAge(99);
+
+        assertThat(userService.patch(user.getId(), changes).block()).isEqualTo(1);
+        assertThat(userService.patch("unknown", changes).block()).isEqualTo(0);
+        User patched = userRepository.findById(user.getId()).block();
+        assertThat(patched.getAge()).isEqualTo(99);
+        assertThat(patched.getName()).isEqualTo(user.getName());
+    }
+
     @Test
     public void deleteUser() {
         User user = DomainUtil.createUser(userRepository);
-        userService.delete(user.getId()).block();
+        Long deleted = userService.delete(user.getId()).block();
 
         User resultUser = userService.get(user.getId()).block();
         assertThat(resultUser).isNull();
+        assertThat(deleted).isEqualTo(1);
+    }
+
+    @Test
+    public void deleteUser_decrements_member_count() {
+        User user = DomainUtil.createUser(userRepository);
+        Club club = DomainUtil.createClub(clubRepository);
+        userRepository.joinClub(user.getId(), club.getId(), 0).block();
+        clubRepository.incrementMemberCount(club.getId(), 1).block();
+
+        assertThat(userService.delete(user.getId()).block()).isEqualTo(1);
+        assertThat(userService.delete(user.getId()).block()).isEqualTo(0);
+        assertThat(clubRepository.findById(club.getId()).block().getMemberCount()).isEqualTo(0);
     }
 
     @Test
@@ -79,4 +214,11 @@ public class UserServiceTest {
         assertThat(result.getId()).isEqualTo(club.getId());
         assertThat(result.getName()).isEqualTo(club.getName());
     }
+
+    @Test
+    public void getClub_not_joined_then_empty() {
+        User user = DomainUtil.createUser(userRepository);
+        assertThat(userService.getClub(user.getId()).block()).isNull();
+        assertThat(userService.getClub("unknown").block()).isNull();
+    }
 }
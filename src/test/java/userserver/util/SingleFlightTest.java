@@ -0,0 +1,67 @@
+package userserver.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SingleFlightTest {
+    MeterRegistry meterRegistry;
+    SingleFlight<String, String> singleFlight;
+    AtomicInteger loads;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight<>("test", meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void concurrent_lookups_share_one_load() {
+        MonoProcessor<String> result = MonoProcessor.create();
+        List<Mono<String>> lookups = Flux.range(0, 10)
+                .map(x -> singleFlight.execute("key", k -> load(result)))
+                .collectList()
+                .block();
+        Mono<List<String>> all = Flux.merge(lookups).collectList();
+        MonoProcessor<List<String>> values = all.toProcessor();
+
+        result.onNext("value");
+
+        assertThat(values.block()).hasSize(10).containsOnly("value");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("singleflight.coalesced").tag("name", "test").counter().count()).isEqualTo(9);
+    }
+
+    @Test
+    public void finished_lookup_is_not_cached() {
+        singleFlight.execute("key", k -> load(Mono.just("first"))).block();
+        String second = singleFlight.execute("key", k -> load(Mono.just("second"))).block();
+
+        assertThat(second).isEqualTo("second");
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void error_is_shared_and_cleared() {
+        Mono<String> failed = singleFlight.execute("key", k -> load(Mono.error(new IllegalStateException())));
+        assertThat(failed.onErrorReturn("error").block()).isEqualTo("error");
+        assertThat(singleFlight.execute("key", k -> load(Mono.just("value"))).block()).isEqualTo("value");
+    }
+
+    private Mono<String> load(Mono<String> value) {
+        return Mono.defer(() -> {
+            loads.incrementAndGet();
+            return value;
+        });
+    }
+}
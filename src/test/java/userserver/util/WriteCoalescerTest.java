@@ -0,0 +1,99 @@
+package userserver.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WriteCoalescerTest {
+    MeterRegistry meterRegistry;
+    List<List<String>> batches;
+    WriteCoalescer<String> coalescer;
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        batches = Collections.synchronizedList(new ArrayList<>());
+        coalescer = new WriteCoalescer<>("test", meterRegistry, Duration.ofMillis(50), 10, items -> {
+            batches.add(items);
+            Map<Integer, Throwable> errors = new HashMap<>();
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).startsWith("bad")) {
+                    errors.put(i, new IllegalStateException(items.get(i)));
+                }
+            }
+            return Mono.just(errors);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        coalescer.dispose();
+    }
+
+    @Test
+    public void writes_in_window_share_one_batch() {
+        List<String> results = Flux.range(0, 25)
+                .flatMap(x -> coalescer.execute("item" + x))
+                .collectList()
+                .block();
+
+        assertThat(results).hasSize(25);
+        assertThat(batches).hasSize(3);
+        assertThat(meterRegistry.get("writecoalescer.batch.size").summary().totalAmount()).isEqualTo(25);
+        assertThat(meterRegistry.get("writecoalescer.queue.delay").timer().count()).isEqualTo(25);
+    }
+
+    @Test
+    public void each_caller_gets_its_own_error() {
+        Mono<String> good = coalescer.execute("good").cache();
+        Mono<String> bad = coalescer.execute("bad").cache();
+        Mono.when(good.onErrorResume(e -> Mono.empty()), bad.onErrorResume(e -> Mono.empty())).block();
+
+        assertThat(good.block()).isEqualTo("good");
+        assertThatThrownBy(bad::block).isInstanceOf(IllegalStateException.class).hasMessage("bad");
+        assertThat(batches).hasSize(1);
+    }
+
+    @Test
+    public void writer_error_fails_whole_batch() {
+        WriteCoalescer<String> failing = new WriteCoalescer<>("failing", meterRegistry, Duration.ofMillis(10), 10,
+                items -> Mono.error(new IllegalStateException("down")));
+        try {
+            assertThatThrownBy(() -> failing.execute("a").block()).hasMessage("down");
+        } finally {
+            failing.dispose();
+        }
+    }
+
+    /**
+     * writer가 window보다 느려서 IN_FLIGHT_BATCHES보다 많은 batch가 기다리는 경우. pipeline이 끝나면 안 된다.
+     */
+    @Test
+    public void slow_writer_with_queued_batches_then_all_complete() {
+        WriteCoalescer<Integer> slow = new WriteCoalescer<>("slow", meterRegistry, Duration.ofMillis(5), 10,
+                items -> Mono.delay(Duration.ofMillis(200)).thenReturn(Collections.<Integer, Throwable>emptyMap()));
+        try {
+            List<Integer> results = Flux.range(0, 8)
+                    .delayElements(Duration.ofMillis(10))
+                    .flatMap(slow::execute)
+                    .collectList()
+                    .block(Duration.ofSeconds(5));
+
+            assertThat(results).containsExactlyInAnyOrder(0, 1, 2, 3, 4, 5, 6, 7);
+            assertThat(slow.isDisposed()).isFalse();
+            assertThat(slow.execute(99).block(Duration.ofSeconds(2))).isEqualTo(99);
+        } finally {
+            slow.dispose();
+        }
+    }
+}